@@ -0,0 +1,198 @@
+package org.lulz.tiger.backend.cache;
+
+import org.lulz.tiger.common.ir.IRFunction;
+import org.lulz.tiger.common.ir.IRInsn;
+import org.lulz.tiger.common.ir.Opcode;
+import org.lulz.tiger.common.symbol.Symbol;
+import org.lulz.tiger.common.symbol.SymbolClass;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// FunctionCache lookups for one compilation. A function's key covers its IR with symbols numbered by first
+// occurrence, so renaming variables or shifting the global temp and label counters keeps the key, plus the entry live
+// sets of its callees, which decide what each CALL saves and restores. Lookups must happen after the function's call
+// graph SCC is solved. Label names in cached assembly are replaced by their first-occurrence number where they are
+// defined or branched to; other words, such as registers, opcodes and callees, are kept even if a label shares the name.
+public class CacheSession {
+    private static final String VERSION = "tiger-function-cache 1";
+    private static final Pattern LABEL_DEFINITION = Pattern.compile("^(?<name>[A-Za-z_]\\w*)(?=:)", Pattern.MULTILINE);
+    private static final Pattern BRANCH_TARGET =
+            Pattern.compile("^(?=\\s*(?:b[a-z0-9.]*|j)\\s).*[\\s,](?<name>[A-Za-z_]\\w*)\\s*$", Pattern.MULTILINE);
+    private static final Pattern LABEL_REF = Pattern.compile("%L(\\d+)");
+
+    private FunctionCache cache;
+    private String configuration;
+    private Map<IRFunction, String> keys = new ConcurrentHashMap<>();
+    private Map<IRFunction, String> hits = new ConcurrentHashMap<>();
+    private AtomicInteger misses = new AtomicInteger();
+
+    // configuration names everything besides the IR that changes the output, e.g. the register allocator
+    public CacheSession(FunctionCache cache, String configuration) {
+        this.cache = cache;
+        this.configuration = configuration;
+    }
+
+    // returns whether the function's assembly is cached, in which case it needs no coloring
+    public boolean lookup(IRFunction function) {
+        String key = keys.computeIfAbsent(function, this::key);
+        String assembly = cache.load(key);
+        if (assembly == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.put(function, assembly);
+        return true;
+    }
+
+    // the function's cached assembly with its label names restored, or null
+    public String getAssembly(IRFunction function) {
+        String assembly = hits.get(function);
+        if (assembly == null) {
+            return null;
+        }
+        List<String> labels = labelNames(function);
+        Matcher matcher = LABEL_REF.matcher(assembly);
+        StringBuilder sb = new StringBuilder(assembly.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(labels.get(Integer.parseInt(matcher.group(1)))));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    public void store(IRFunction function, String assembly) {
+        List<String> labels = labelNames(function);
+        Map<String, Integer> numbers = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            numbers.put(labels.get(i), i);
+        }
+        String text = replaceLabels(replaceLabels(assembly, LABEL_DEFINITION, numbers), BRANCH_TARGET, numbers);
+        cache.store(keys.computeIfAbsent(function, this::key), text);
+    }
+
+    // replaces the name group of every match that is one of the labels by its number
+    private static String replaceLabels(String assembly, Pattern pattern, Map<String, Integer> numbers) {
+        Matcher matcher = pattern.matcher(assembly);
+        StringBuilder sb = new StringBuilder(assembly.length());
+        int end = 0;
+        while (matcher.find()) {
+            Integer number = numbers.get(matcher.group("name"));
+            if (number != null) {
+                sb.append(assembly, end, matcher.start("name")).append("%L").append(number);
+                end = matcher.end("name");
+            }
+        }
+        return sb.append(assembly, end, assembly.length()).toString();
+    }
+
+    public int getHits() {
+        return hits.size();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public FunctionCache getCache() {
+        return cache;
+    }
+
+    private String key(IRFunction function) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION).append('\n').append(configuration).append('\n');
+        sb.append(function.getName()).append(' ').append(function.getSymbol().getType())
+                .append(' ').append(function.getFrameSize()).append('\n');
+
+        Map<Symbol, Integer> numbers = new HashMap<>();
+        for (IRInsn insn : function.getInstructions()) {
+            if (insn.isLabel()) {
+                sb.append(operand(insn.getLabel(), function, numbers)).append(":\n");
+                continue;
+            }
+            sb.append(insn.getOpcode());
+            for (Symbol operand : insn.getOperands()) {
+                sb.append(' ').append(operand(operand, function, numbers));
+            }
+            sb.append('\n');
+        }
+
+        // what a CALL saves around the callee depends on the callee's entry live set
+        List<String> callees = new ArrayList<>();
+        for (IRInsn insn : function.getInstructions()) {
+            if (!insn.isLabel() && insn.getOpcode() == Opcode.CALL && insn.getOperands()[1].getIrFunction() != null) {
+                List<String> live = new ArrayList<>();
+                for (Symbol symbol : insn.getOperands()[1].getIrFunction().getBasicBlocks().get(0).getInSet()) {
+                    if (!symbol.isArgument()) {
+                        live.add(operand(symbol, function, numbers));
+                    }
+                }
+                live.sort(null);
+                callees.add(insn.getOperands()[1].getName() + " " + live);
+            }
+        }
+        callees.sort(null);
+        callees.forEach(callee -> sb.append(callee).append('\n'));
+        return sha256(sb.toString());
+    }
+
+    private String operand(Symbol symbol, IRFunction function, Map<Symbol, Integer> numbers) {
+        switch (symbol.getSymbolClass()) {
+            case ICONST:
+                return "i" + symbol.getIntVal();
+            case FCONST:
+                return "f" + Integer.toHexString(Float.floatToIntBits(symbol.getFloatVal()));
+            case FUNCTION:
+                return symbol.getName() + ":" + symbol.getType();
+            case LABEL:
+                return "L" + numbers.computeIfAbsent(symbol, s -> numbers.size());
+            default:
+                if (symbol.getFunction() != function.getSymbol()) {     // lives in another frame
+                    return symbol.getFunction().getName() + "@" + symbol.getFrameIndex() + ":" + symbol.getType();
+                }
+                return "v" + numbers.computeIfAbsent(symbol, s -> numbers.size()) + "@" + symbol.getFrameIndex()
+                        + ":" + symbol.getType() + (symbol.isArgument() ? ":arg" : "");
+        }
+    }
+
+    // the function's label names in order of first occurrence
+    private List<String> labelNames(IRFunction function) {
+        Set<String> names = new LinkedHashSet<>();
+        for (IRInsn insn : function.getInstructions()) {
+            if (insn.isLabel()) {
+                names.add(insn.getLabel().getName());
+            } else {
+                for (Symbol operand : insn.getOperands()) {
+                    if (operand.getSymbolClass() == SymbolClass.LABEL) {
+                        names.add(operand.getName());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.lulz.tiger.backend.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Function cache in a directory, shared between processes. Entries are written to a temporary file and moved into
+// place, so concurrent compilers never see a partial entry. A read refreshes the entry's modification time, and
+// evict() deletes the least recently used entries until the directory fits its size cap. The entries' total size is
+// kept in a file next to them, so a compiler only walks the directory when its stores push that total over the cap.
+public class DiskFunctionCache implements FunctionCache {
+    private static final String SUFFIX = ".s";
+    private static final String SIZE_FILE = "size";
+
+    private Path directory;
+    private long maxBytes;
+    private long storedBytes;   // written since the running size was last updated
+
+    public DiskFunctionCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public String load(String key) {
+        Path path = pathOf(key);
+        try {
+            String assembly = Files.readString(path, StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return assembly;
+        } catch (IOException e) {
+            return null;    // missing or unreadable entries are misses
+        }
+    }
+
+    // a failed write only costs a later miss, so it is not reported
+    @Override
+    public void store(String key, String assembly) {
+        Path path = pathOf(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(path.getParent());
+            temp = Files.createTempFile(path.getParent(), key, ".part");
+            Files.writeString(temp, assembly, StandardCharsets.UTF_8);
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            synchronized (this) {
+                storedBytes += size;
+            }
+        } catch (IOException e) {
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // adds this process's stores to the running size, and evicts only when that pushes it over the cap. Replaced
+    // entries are counted twice, which at worst evicts early; evict() recounts the entries.
+    @Override
+    public void trim() throws IOException {
+        long stored;
+        synchronized (this) {
+            stored = storedBytes;
+            storedBytes = 0;
+        }
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        long total = readSize();
+        if (total < 0 || total + stored > maxBytes) {
+            evict();
+        } else if (stored > 0) {
+            writeSize(total + stored);
+        }
+    }
+
+    public void evict() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (file.toString().endsWith(SUFFIX)) {
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;    // evicted by another compiler meanwhile
+            }
+        });
+        long total = entries.stream().mapToLong(e -> e.size).sum();
+        entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entry.path);
+            total -= entry.size;
+        }
+        writeSize(total);
+    }
+
+    // returns the running size, or -1 when it is missing or unreadable
+    private long readSize() {
+        try {
+            return Long.parseLong(Files.readString(directory.resolve(SIZE_FILE), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void writeSize(long total) throws IOException {
+        Path temp = Files.createTempFile(directory, SIZE_FILE, ".part");
+        try {
+            Files.writeString(temp, Long.toString(total), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, directory.resolve(SIZE_FILE), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve(SIZE_FILE), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path pathOf(String key) {
+        // two-character fan-out keeps directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private static class Entry {
+        Path path;
+        long size;
+        long lastUsed;
+
+        Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.lulz.tiger.backend.cache;
+
+import java.io.IOException;
+
+// Store of per-function assembly keyed by content hash; see CacheSession for the keys
+public interface FunctionCache {
+    // returns the cached assembly for the key, or null
+    String load(String key);
+
+    void store(String key, String assembly);
+
+    // called after each compilation to bound the cache's size
+    void trim() throws IOException;
+}
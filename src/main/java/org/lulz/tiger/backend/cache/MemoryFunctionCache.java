@@ -0,0 +1,34 @@
+package org.lulz.tiger.backend.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Function cache for one long-running process. It keeps the entries loaded or stored since the previous trim(), so
+// each recompilation can reuse everything the last one produced and nothing older is retained.
+public class MemoryFunctionCache implements FunctionCache {
+    private Map<String, String> current = new ConcurrentHashMap<>();
+    private Map<String, String> previous = new ConcurrentHashMap<>();
+
+    @Override
+    public String load(String key) {
+        String assembly = current.get(key);
+        if (assembly == null) {
+            assembly = previous.get(key);
+            if (assembly != null) {
+                current.put(key, assembly);
+            }
+        }
+        return assembly;
+    }
+
+    @Override
+    public void store(String key, String assembly) {
+        current.put(key, assembly);
+    }
+
+    @Override
+    public synchronized void trim() {
+        previous = current;
+        current = new ConcurrentHashMap<>();
+    }
+}
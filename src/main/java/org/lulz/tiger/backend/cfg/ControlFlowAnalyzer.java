@@ -1,13 +1,16 @@
 package org.lulz.tiger.backend.cfg;
 
 import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.DirectedPseudograph;
 import org.lulz.tiger.common.ir.BasicBlock;
 import org.lulz.tiger.common.ir.IRFunction;
 import org.lulz.tiger.common.ir.IRInsn;
 import org.lulz.tiger.common.ir.IRListing;
+import org.lulz.tiger.common.ir.Opcode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ControlFlowAnalyzer implements Runnable {
@@ -19,7 +22,26 @@ public class ControlFlowAnalyzer implements Runnable {
 
     @Override
     public void run() {
-        listing.getFunctions().forEach(this::analyzeFunction);
+        // functions are independent until the call graph is built
+        listing.getFunctions().parallelStream().forEach(this::analyzeFunction);
+        buildCallGraph();
+    }
+
+    private void buildCallGraph() {
+        // edges point from caller to callee; stdlib functions have no IR and are left out
+        Graph<IRFunction, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+        listing.getFunctions().forEach(graph::addVertex);
+        for (IRFunction function : listing.getFunctions()) {
+            for (IRInsn insn : function.getInstructions()) {
+                if (!insn.isLabel() && insn.getOpcode() == Opcode.CALL) {
+                    IRFunction callee = insn.getOperands()[1].getIrFunction();
+                    if (callee != null) {
+                        graph.addEdge(function, callee);
+                    }
+                }
+            }
+        }
+        listing.setCallGraph(graph);
     }
 
     private void analyzeFunction(IRFunction function) {
@@ -28,49 +50,46 @@ public class ControlFlowAnalyzer implements Runnable {
             throw new RuntimeException("empty function");
         }
 
-        /* leader analysis */
-        boolean nextIsLeader = true; // first instruction is a leader
-        for (IRInsn insn : insns) {
-            if (nextIsLeader) {
-                insn.setLeader(true);
-                nextIsLeader = false;
-            }
-            IRInsn branchTarget = insn.getBranchTarget();
-            if (branchTarget != null) {
-                branchTarget.setLeader(true);
-                nextIsLeader = true; // instruction after branch is a leader
-            }
-        }
+        Graph<BasicBlock, DefaultEdge> graph = new DirectedPseudograph<>(DefaultEdge.class);
+        List<BasicBlock> branchBlocks = new ArrayList<>(); // blocks ending in a branch
 
-        /* split basic blocks */
+        /* leader analysis, block splitting and fall-through edges in one pass */
+        BasicBlock prevBlock = null;
         BasicBlock currentBlock = new BasicBlock();
+        boolean nextIsLeader = true; // first instruction is a leader
         for (IRInsn insn : insns) {
-            if (insn.isLeader() && !currentBlock.isEmpty()) {
-                function.addBasicBlock(currentBlock);
-                currentBlock = new BasicBlock();
+            // branches only target labels, so every label starts a block
+            if (nextIsLeader || insn.isLabel()) {
+                insn.setLeader(true);
+                if (!currentBlock.isEmpty()) {
+                    addBlock(function, graph, prevBlock, currentBlock, branchBlocks);
+                    prevBlock = currentBlock;
+                    currentBlock = new BasicBlock();
+                }
             }
             currentBlock.add(insn);
+            nextIsLeader = insn.getBranchTarget() != null; // instruction after branch is a leader
         }
-        if (!currentBlock.isEmpty()) {
-            function.addBasicBlock(currentBlock);
-        }
+        addBlock(function, graph, prevBlock, currentBlock, branchBlocks);
 
-        /* cfg generation */
-        Graph<BasicBlock, DefaultEdge> graph = new DirectedPseudograph<>(DefaultEdge.class);
-        function.getBasicBlocks().forEach(graph::addVertex); // populate nodes
-
-        BasicBlock prevBlock = null;
-        for (BasicBlock block : function.getBasicBlocks()) { // populate edges
-            if (prevBlock != null && prevBlock.getLast().isFallThrough()) {
-                graph.addEdge(prevBlock, block);
-            }
-            IRInsn branchTarget = block.getLast().getBranchTarget();
-            if (branchTarget != null) {
-                BasicBlock targetBlock = function.getBlockByLeader(branchTarget);
-                graph.addEdge(block, targetBlock);
-            }
-            prevBlock = block;
+        /* branch edges, now that every target block exists */
+        for (BasicBlock block : branchBlocks) {
+            BasicBlock targetBlock = function.getBlockByLeader(block.getLast().getBranchTarget());
+            graph.addEdge(block, targetBlock);
         }
         function.setCfg(graph);
     }
+
+    private void addBlock(IRFunction function, Graph<BasicBlock, DefaultEdge> graph, BasicBlock prevBlock,
+                          BasicBlock block, List<BasicBlock> branchBlocks) {
+        // blocks hash by content, so they only enter the graph once complete
+        function.addBasicBlock(block);
+        graph.addVertex(block);
+        if (prevBlock != null && prevBlock.getLast().isFallThrough()) {
+            graph.addEdge(prevBlock, block);
+        }
+        if (block.getLast().getBranchTarget() != null) {
+            branchBlocks.add(block);
+        }
+    }
 }
@@ -1,25 +1,21 @@
 package org.lulz.tiger.backend.codegen;
 
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-import org.lulz.tiger.backend.liveness.Web;
+import org.lulz.tiger.common.ir.IRFunction;
 import org.lulz.tiger.common.ir.IRInsn;
 import org.lulz.tiger.common.symbol.Symbol;
 
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BriggsRegisterAllocator implements RegisterAllocator {
+    private Map<IRFunction, RegisterTable> tables = new ConcurrentHashMap<>();   // functions are lowered concurrently
 
     @Override
     public MIPSRegister getRegister(Symbol symbol, IRInsn insn) {
         if (symbol.isArgument()) {
             return MIPSCodeGenerator.ARG_REGS[symbol.getFrameIndex() / 4];
         }
-        SimpleGraph<Web, DefaultEdge> graph = insn.getFunction().getColoredGraph();
-        Optional<Web> web_opt = graph.vertexSet().stream().filter(v -> v.getSymbol() == symbol && v.getRange().contains(insn)).findAny();
-        if (web_opt.isEmpty()) {
-            return null;
-        }
-        return web_opt.get().getRegister();
+        // built once per function, after coloring has finished
+        return tables.computeIfAbsent(insn.getFunction(), RegisterTable::new).get(symbol, insn);
     }
 }
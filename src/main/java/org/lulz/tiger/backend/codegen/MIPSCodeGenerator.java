@@ -1,5 +1,8 @@
 package org.lulz.tiger.backend.codegen;
 
+import org.lulz.tiger.backend.cache.CacheSession;
+import org.lulz.tiger.common.Parallelism;
+import org.lulz.tiger.common.ir.BasicBlock;
 import org.lulz.tiger.common.ir.IRFunction;
 import org.lulz.tiger.common.ir.IRInsn;
 import org.lulz.tiger.common.ir.IRListing;
@@ -12,7 +15,19 @@ import org.lulz.tiger.common.type.TypeKind;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lulz.tiger.backend.codegen.MIPSRegister.*;
 import static org.lulz.tiger.common.ir.Opcode.*;
@@ -21,6 +36,9 @@ public class MIPSCodeGenerator implements Callable<String> {
     private IRListing irListing;
     private StringBuilder buffer = new StringBuilder();
     private RegisterAllocator provider;
+    private BasicBlock liveBlock;               // block whose instruction live sets are cached for CALL lowering
+    private List<Set<Symbol>> liveSets;
+    private CacheSession cache;
 
     private static MIPSRegister RESERVED_A = t8;
     private static MIPSRegister RESERVED_B = t9;
@@ -32,6 +50,11 @@ public class MIPSCodeGenerator implements Callable<String> {
         this.provider = provider;
     }
 
+    // cached functions are copied from the cache, and the others are stored after lowering
+    public void setCache(CacheSession cache) {
+        this.cache = cache;
+    }
+
     private void lowerFunction(IRFunction function) {
         // label
         emit(function.getName() + ":");
@@ -139,7 +162,7 @@ public class MIPSCodeGenerator implements Callable<String> {
                 break;
             case CALL:
                 // save live variables in inSet of call
-                insn.getInSet().forEach(s -> save(s, insn));
+                inIdOrder(getInSet(insn), insn).forEach(s -> save(s, insn));
 
                 // prepare arguments
                 for (int i = 0; i < insn.getOperands().length - 2; i++) {
@@ -154,7 +177,7 @@ public class MIPSCodeGenerator implements Callable<String> {
                 emit("jal", insn.getOperands()[1].getName());
 
                 // restore live variables needed in outSet of call
-                insn.getOutSet().stream()
+                inIdOrder(getOutSet(insn), insn).stream()
                         .filter(s -> s != insn.getOperands()[0])
                         .forEach(s -> restore(s, insn));
 
@@ -280,6 +303,32 @@ public class MIPSCodeGenerator implements Callable<String> {
         emit("lw", reg, "" + symbol.getFrameIndex() + "(" + base + ")");
     }
 
+    // the function's own variables, then the globals, each by id; unlike the sets' own order this ignores the names,
+    // as the function cache does
+    private static List<Symbol> inIdOrder(Set<Symbol> set, IRInsn insn) {
+        List<Symbol> symbols = new ArrayList<>(set);
+        symbols.sort(Comparator.comparing((Symbol s) -> s.getFunction() != insn.getFunction().getSymbol())
+                .thenComparingInt(Symbol::getId));
+        return symbols;
+    }
+
+    private Set<Symbol> getInSet(IRInsn insn) {
+        return getInstructionSets(insn).get(insn.getIndex() - insn.getBlock().getLeader().getIndex());
+    }
+
+    private Set<Symbol> getOutSet(IRInsn insn) {
+        return getInstructionSets(insn).get(insn.getIndex() - insn.getBlock().getLeader().getIndex() + 1);
+    }
+
+    private List<Set<Symbol>> getInstructionSets(IRInsn insn) {
+        // blocks may only store boundary sets, so fetch a block's instruction sets once while lowering it
+        if (liveBlock != insn.getBlock()) {
+            liveBlock = insn.getBlock();
+            liveSets = liveBlock.getInstructionSets();
+        }
+        return liveSets;
+    }
+
     private void int2float(MIPSRegister reg) {
         emit("mtc1", reg, f0);
         emit("cvt.s.w", f0, f0);
@@ -304,18 +353,52 @@ public class MIPSCodeGenerator implements Callable<String> {
 
     private void emit(String op, CharSequence... args) {
         buffer.append(op);
-        if (args.length != 0) {
-            buffer.append(" ").append(String.join(", ", args));
+        for (int i = 0; i < args.length; i++) {
+            buffer.append(i == 0 ? " " : ", ").append(args[i]);
         }
-        buffer.append("\n");
+        buffer.append('\n');
+    }
+
+    // lowers functions concurrently and writes each to out in source order as soon as it and its predecessors are done.
+    // Only a few functions are lowered ahead of the one being written, so the assembly of the whole program is never
+    // held at once.
+    public void write(Writer out) throws IOException {
+        try (InputStream input = getClass().getResourceAsStream("/header.asm");
+             Reader header = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            header.transferTo(out);
+        }
+        int window = 2 * Parallelism.parallelism();
+        Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+        for (IRFunction function : irListing.getFunctions()) {
+            if (pending.size() == window) {
+                out.write(Parallelism.join(pending.remove()));
+            }
+            pending.add(CompletableFuture.supplyAsync(() -> lower(function), Parallelism.executor()));
+        }
+        while (!pending.isEmpty()) {
+            out.write(Parallelism.join(pending.remove()));
+        }
+    }
+
+    // each function gets its own generator, since the output buffer and live set cache are per function
+    private String lower(IRFunction function) {
+        String assembly = cache != null ? cache.getAssembly(function) : null;
+        if (assembly != null) {
+            return assembly;
+        }
+        MIPSCodeGenerator generator = new MIPSCodeGenerator(irListing, provider);
+        generator.lowerFunction(function);
+        assembly = generator.buffer.toString();
+        if (cache != null) {
+            cache.store(function, assembly);
+        }
+        return assembly;
     }
 
     @Override
     public String call() throws IOException {
-        try (InputStream input = getClass().getResourceAsStream("/header.asm")) {
-            buffer.append(new String(input.readAllBytes()));
-        }
-        irListing.getFunctions().forEach(this::lowerFunction);
-        return buffer.toString();
+        StringWriter out = new StringWriter();
+        write(out);
+        return out.toString();
     }
 }
@@ -0,0 +1,54 @@
+package org.lulz.tiger.backend.codegen;
+
+import org.lulz.tiger.backend.liveness.Web;
+import org.lulz.tiger.common.ir.IRFunction;
+import org.lulz.tiger.common.ir.IRInsn;
+import org.lulz.tiger.common.symbol.Symbol;
+
+import java.util.BitSet;
+import java.util.List;
+
+// Register assignment of a colored function, indexed by (symbol id, instruction number). A symbol with a single web
+// has the same register at every instruction that references it, so only symbols split into several webs need a
+// row over all instructions.
+class RegisterTable {
+    private Symbol function;
+    private MIPSRegister[] single;      // per symbol id, register when the symbol has one web
+    private MIPSRegister[][] byInsn;    // per symbol id, register by instruction number when it has several
+
+    RegisterTable(IRFunction function) {
+        this.function = function.getSymbol();
+        List<Web> webs = function.getColoredGraph().getWebs();
+        int numSymbols = this.function.getLocalCount();
+        int[] webCount = new int[numSymbols];
+        for (Web web : webs) {
+            webCount[web.getSymbol().getId()]++;
+        }
+
+        single = new MIPSRegister[numSymbols];
+        byInsn = new MIPSRegister[numSymbols][];
+        for (Web web : webs) {
+            int id = web.getSymbol().getId();
+            if (webCount[id] == 1) {
+                single[id] = web.getRegister();
+                continue;
+            }
+            if (byInsn[id] == null) {
+                byInsn[id] = new MIPSRegister[function.getInstructions().size()];
+            }
+            BitSet range = web.getRange();
+            for (int insn = range.nextSetBit(0); insn >= 0; insn = range.nextSetBit(insn + 1)) {
+                byInsn[id][insn] = web.getRegister();
+            }
+        }
+    }
+
+    // null if the symbol is spilled at this instruction or has no web in this function
+    MIPSRegister get(Symbol symbol, IRInsn insn) {
+        if (symbol.getFunction() != function) {
+            return null;
+        }
+        int id = symbol.getId();
+        return byInsn[id] == null ? single[id] : byInsn[id][insn.getIndex()];
+    }
+}
@@ -1,70 +1,80 @@
 package org.lulz.tiger.backend.coloring;
 
-import org.jgrapht.Graphs;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-import org.lulz.tiger.backend.liveness.Web;
+import org.lulz.tiger.backend.liveness.InterferenceGraph;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
 
 public class RegColoring implements Runnable {
     public static final int NO_COLOR = -1;
-    private SimpleGraph<Web, DefaultEdge> graph;
+    private InterferenceGraph graph;
     private int N;
 
-    public RegColoring(SimpleGraph<Web, DefaultEdge> graph, int numRegAvailable) {
+    public RegColoring(InterferenceGraph graph, int numRegAvailable) {
         this.graph = graph;
         this.N = numRegAvailable;
     }
 
     @Override
     public void run() {
-        @SuppressWarnings("unchecked")
-        SimpleGraph<Web, DefaultEdge> spilledGraph = (SimpleGraph<Web, DefaultEdge>) graph.clone();
+        // spilled webs are dropped from the graph by marking them and lowering their neighbors' degrees
+        boolean[] spilled = new boolean[graph.size()];
+        int[] degree = new int[graph.size()];
+        for (int v = 0; v < graph.size(); v++) {
+            degree[v] = graph.degreeOf(v);
+        }
 
         while (true) {
-            Stack<Web> stack = pushToStack(spilledGraph);
-            Web spilledNode = tryColoring(stack);
+            int[] stack = pushToStack(spilled, degree);
+            int spilledNode = tryColoring(stack);
 
-            if (spilledNode == null) {
+            if (spilledNode == NO_COLOR) {
                 break;
             }
-            spilledGraph.removeVertex(spilledNode);
+            spilled[spilledNode] = true;
+            for (int k = 0; k < graph.degreeOf(spilledNode); k++) {
+                degree[graph.neighbor(spilledNode, k)]--;
+            }
         }
     }
 
-    Stack<Web> pushToStack(SimpleGraph<Web, DefaultEdge> spilledGraph) {
-        Stack<Web> stack = new Stack<>();
-        List<Web> vertexList = new ArrayList<>(spilledGraph.vertexSet());
+    // returns web ids from stack bottom to stack top
+    int[] pushToStack(boolean[] spilled, int[] degree) {
+        int[] stack = new int[graph.size()];
+        int top = 0;
 
         //Remove nodes that have degree < N
-        List<Web> toRemove = vertexList.stream().filter(v -> spilledGraph.degreeOf(v) < N)
-                .collect(Collectors.toList());
-        stack.addAll(toRemove);
-        vertexList.removeAll(toRemove);
+        for (int v = 0; v < graph.size(); v++) {
+            if (!spilled[v] && degree[v] < N) {
+                stack[top++] = v;
+            }
+        }
 
         //2.Remove that node and push it on the stack
-        Collections.sort(vertexList);
-        stack.addAll(vertexList);
+        Integer[] rest = IntStream.range(0, graph.size()).filter(v -> !spilled[v] && degree[v] >= N)
+                .boxed().toArray(Integer[]::new);
+        Arrays.sort(rest, Comparator.comparingInt(v -> graph.getWeb(v).getSpillCost()));
+        for (int v : rest) {
+            stack[top++] = v;
+        }
 
-        return stack;
+        return Arrays.copyOf(stack, top);
     }
 
-    Web tryColoring(Stack<Web> stack) {
-        graph.vertexSet().forEach(w -> w.setColor(NO_COLOR));   // reset all colors
+    // returns the id of the web that must be spilled, or NO_COLOR if the whole stack was colored
+    int tryColoring(int[] stack) {
+        graph.getWebs().forEach(w -> w.setColor(NO_COLOR));   // reset all colors
 
-        while (!stack.empty()) {
-            Web v = stack.pop();
+        boolean[] neighborHasColor = new boolean[N];
+        for (int top = stack.length - 1; top >= 0; top--) {
+            int v = stack[top];
 
-            boolean[] neighborHasColor = new boolean[N];
-            for (Web adjv : Graphs.neighborListOf(graph, v)) {
-            //System.out.println("v: " + adjv + "c: " + adjv.getColor());
-                if (adjv.getColor() != NO_COLOR) {
-                    neighborHasColor[adjv.getColor()] = true;
+            Arrays.fill(neighborHasColor, false);
+            for (int k = 0; k < graph.degreeOf(v); k++) {
+                int color = graph.getWeb(graph.neighbor(v, k)).getColor();
+                if (color != NO_COLOR) {
+                    neighborHasColor[color] = true;
                 }
             }
 
@@ -80,9 +90,9 @@ public class RegColoring implements Runnable {
                 // no color available, spill!
                 return v;
             }
-            v.setColor(temp_color);
+            graph.getWeb(v).setColor(temp_color);
         }
-        return null;
+        return NO_COLOR;
     }
 
 }
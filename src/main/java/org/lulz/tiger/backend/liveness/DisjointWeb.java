@@ -1,60 +1,66 @@
 package org.lulz.tiger.backend.liveness;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 public class DisjointWeb {
 
-    private Map<Web, Web> parent;
-    private Map<Web, Integer> rank;
+    private List<Web> webs;
+    private int[] parent;
+    private int[] rank;
 
-    public DisjointWeb() {
-        parent = new HashMap<>();
-        rank = new HashMap<>();
-    }
-
-    public void addWeb(Web web) {
-        parent.put(web, web);
-        rank.put(web, 0);
-    }
-
-    public void addWebs(Collection<Web> webs) {
-        for (Web web: webs) {
-            parent.put(web, web);
-            rank.put(web, 0);
+    // webs must be numbered by their position in the list
+    public DisjointWeb(List<Web> webs) {
+        this.webs = webs;
+        parent = new int[webs.size()];
+        rank = new int[webs.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
         }
     }
 
     public Web find(Web web)
     {
-        if (parent.get(web) != web)
-            parent.put(web, find(parent.get(web)));
-        return parent.get(web);
+        return webs.get(find(web.getId()));
+    }
+
+    private int find(int id)
+    {
+        int root = id;
+        while (parent[root] != root)
+            root = parent[root];
+        while (parent[id] != root) {    // path compression
+            int next = parent[id];
+            parent[id] = root;
+            id = next;
+        }
+        return root;
     }
 
     public void union(Web a, Web b)
     {
-        Web x = find(a);
-        Web y = find(b);
+        int x = find(a.getId());
+        int y = find(b.getId());
 
         if (x == y)
             return;
 
-        if (rank.get(x) > rank.get(y)) {
-            parent.put(y, x);
-            x.getRange().addAll(y.getRange());
-            x.addSpillCost(y.getSpillCost());
-        } else if (rank.get(x) < rank.get(y)) {
-            parent.put(x, y);
-            y.getRange().addAll(x.getRange());
-            y.addSpillCost(x.getSpillCost());
+        if (rank[x] > rank[y]) {
+            merge(x, y);
+        } else if (rank[x] < rank[y]) {
+            merge(y, x);
         } else {
-            parent.put(x, y);
-            rank.put(y, rank.get(y) + 1);
-            y.getRange().addAll(x.getRange());
-            y.addSpillCost(x.getSpillCost());
+            merge(y, x);
+            rank[y]++;
         }
     }
 
+    private void merge(int root, int child)
+    {
+        parent[child] = root;
+        Web rootWeb = webs.get(root);
+        Web childWeb = webs.get(child);
+        rootWeb.getRange().or(childWeb.getRange());
+        rootWeb.addSpillCost(childWeb.getSpillCost());
+    }
+
 }
@@ -0,0 +1,131 @@
+package org.lulz.tiger.backend.liveness;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.SimpleGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+// Undirected interference graph over webs numbered 0..n-1. Edge membership is a triangular bit matrix and
+// neighbors are kept in int adjacency arrays, so building and coloring do not allocate per edge or per query.
+public class InterferenceGraph {
+    private List<Web> webs;
+    private long[] matrix;
+    private int[][] adjacency;
+    private int[] degree;
+    private int[] moves = new int[0];  // pairs of move-related webs, which may share a register
+    private int moveCount;
+
+    public InterferenceGraph(Collection<Web> vertices) {
+        webs = new ArrayList<>(vertices);
+        int n = webs.size();
+        for (int i = 0; i < n; i++) {
+            webs.get(i).setId(i);
+        }
+        matrix = new long[(int) (((long) n * (n - 1) / 2 + 63) >>> 6)];
+        adjacency = new int[n][];
+        degree = new int[n];
+        Arrays.fill(adjacency, new int[0]);
+    }
+
+    public int size() {
+        return webs.size();
+    }
+
+    public Web getWeb(int id) {
+        return webs.get(id);
+    }
+
+    public List<Web> getWebs() {
+        return Collections.unmodifiableList(webs);
+    }
+
+    public void addEdge(Web a, Web b) {
+        addEdge(a.getId(), b.getId());
+    }
+
+    public void addEdge(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        long bit = bitIndex(a, b);
+        long mask = 1L << bit;
+        int word = (int) (bit >>> 6);
+        if ((matrix[word] & mask) != 0) {
+            return;
+        }
+        matrix[word] |= mask;
+        addNeighbor(a, b);
+        addNeighbor(b, a);
+    }
+
+    public boolean containsEdge(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+        long bit = bitIndex(a, b);
+        return (matrix[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    public int degreeOf(int id) {
+        return degree[id];
+    }
+
+    // k-th neighbor of the web, for 0 <= k < degreeOf(id)
+    public int neighbor(int id, int k) {
+        return adjacency[id][k];
+    }
+
+    // records a copy between two webs that do not interfere through it, as a candidate for coalescing
+    public void addMove(Web a, Web b) {
+        if (a == b) {
+            return;
+        }
+        if (2 * moveCount + 2 > moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(8, moves.length * 2));
+        }
+        moves[2 * moveCount] = a.getId();
+        moves[2 * moveCount + 1] = b.getId();
+        moveCount++;
+    }
+
+    public int moveCount() {
+        return moveCount;
+    }
+
+    // the two webs of the i-th move, for 0 <= i < moveCount() and side 0 or 1
+    public int moveWeb(int i, int side) {
+        return moves[2 * i + side];
+    }
+
+    // jgrapht copy of the graph, only needed for DOT export
+    public SimpleGraph<Web, DefaultEdge> toSimpleGraph() {
+        SimpleGraph<Web, DefaultEdge> graph = new SimpleGraph<>(DefaultEdge.class);
+        webs.forEach(graph::addVertex);
+        for (int a = 0; a < webs.size(); a++) {
+            for (int k = 0; k < degree[a]; k++) {
+                int b = adjacency[a][k];
+                if (a < b) {
+                    graph.addEdge(webs.get(a), webs.get(b));
+                }
+            }
+        }
+        return graph;
+    }
+
+    private void addNeighbor(int id, int neighbor) {
+        if (degree[id] == adjacency[id].length) {
+            adjacency[id] = Arrays.copyOf(adjacency[id], Math.max(4, degree[id] * 2));
+        }
+        adjacency[id][degree[id]++] = neighbor;
+    }
+
+    private static long bitIndex(int a, int b) {
+        int lo = Math.min(a, b);
+        int hi = Math.max(a, b);
+        return (long) hi * (hi - 1) / 2 + lo;
+    }
+}
@@ -0,0 +1,219 @@
+package org.lulz.tiger.backend.liveness;
+
+import org.jgrapht.Graphs;
+import org.lulz.tiger.common.ir.BasicBlock;
+import org.lulz.tiger.common.ir.IRFunction;
+import org.lulz.tiger.common.ir.IRInsn;
+import org.lulz.tiger.common.symbol.Symbol;
+
+import java.util.*;
+
+// Bit-vector liveness for one function: a variable of the function is numbered by its dense id, and one of another
+// frame, such as a global, after them in order of first occurrence. gen/kill/in/out are long[] per basic block
+// and a worklist visits blocks in reverse postorder of the reversed CFG. The solution is then published to the
+// Set<Symbol> views on the blocks and instructions that the rest of the backend reads.
+public class LiveSetSolver {
+    private IRFunction function;
+    private List<BasicBlock> blocks;
+    private int[][] successors;
+    private int[][] predecessors;
+    private int[] order;    // block indices, exits first
+
+    private Symbol owner;
+    private Map<Symbol, Integer> others = new HashMap<>();  // numbers of the variables of other frames
+    private List<Symbol> symbols;                           // by number
+
+    public LiveSetSolver(IRFunction function) {
+        this.function = function;
+        this.blocks = function.getBasicBlocks();
+        this.owner = function.getSymbol();
+
+        successors = new int[blocks.size()][];
+        List<List<Integer>> preds = new ArrayList<>();
+        blocks.forEach(b -> preds.add(new ArrayList<>()));
+        for (int i = 0; i < blocks.size(); i++) {
+            List<BasicBlock> succs = Graphs.successorListOf(function.getCfg(), blocks.get(i));
+            successors[i] = new int[succs.size()];
+            for (int j = 0; j < succs.size(); j++) {
+                successors[i][j] = succs.get(j).getIndex();
+                preds.get(successors[i][j]).add(i);
+            }
+        }
+        predecessors = new int[blocks.size()][];
+        for (int i = 0; i < blocks.size(); i++) {
+            predecessors[i] = preds.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        order = postorder();
+    }
+
+    // returns true if the entry block's live-in set changed, since callers of this function depend on it
+    public boolean solve() {
+        numberSymbols();
+        int words = (symbols.size() + 63) >>> 6;
+        int n = blocks.size();
+        long[][] gen = new long[n][words];
+        long[][] kill = new long[n][words];
+        long[][] in = new long[n][];
+        long[][] out = new long[n][words];
+
+        for (int b = 0; b < n; b++) {
+            BasicBlock block = blocks.get(b);
+            for (int i = block.size() - 1; i >= 0; i--) {
+                IRInsn insn = block.get(i);
+                int def = defOf(insn);
+                if (def >= 0) {
+                    clear(gen[b], def);
+                    set(kill[b], def);
+                }
+                long[] blockGen = gen[b];
+                insn.forEachUse(symbol -> set(blockGen, id(symbol)));
+            }
+            in[b] = gen[b].clone();
+        }
+
+        // worklist ordered by position in the iteration order
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+        BitSet worklist = new BitSet(n);
+        worklist.set(0, n);
+        long[] newIn = new long[words];
+        for (int p = worklist.nextSetBit(0); p >= 0; p = worklist.nextSetBit(0)) {
+            worklist.clear(p);
+            int b = order[p];
+            for (int s : successors[b]) {
+                or(out[b], in[s]);
+            }
+            boolean changed = false;
+            for (int w = 0; w < words; w++) {
+                newIn[w] = gen[b][w] | (out[b][w] & ~kill[b][w]);
+                changed |= newIn[w] != in[b][w];
+            }
+            if (changed) {
+                System.arraycopy(newIn, 0, in[b], 0, words);
+                for (int pred : predecessors[b]) {
+                    worklist.set(position[pred]);
+                }
+            }
+        }
+
+        return publish(in, out);
+    }
+
+    private boolean publish(long[][] in, long[][] out) {
+        Set<Symbol> entry = blocks.get(0).getInSet();
+        Set<Symbol> oldEntry = new HashSet<>(entry);
+
+        int words = (symbols.size() + 63) >>> 6;
+        long[] live = new long[words];
+        for (int b = 0; b < blocks.size(); b++) {
+            BasicBlock block = blocks.get(b);
+            if (!block.hasInstructionSets()) {
+                store(in[b], block.getInSet());
+                store(out[b], block.getOutSet());
+                continue;
+            }
+            System.arraycopy(out[b], 0, live, 0, words);
+            // adjacent instructions share their out/in set objects
+            for (int i = block.size() - 1; i >= 0; i--) {
+                IRInsn insn = block.get(i);
+                store(live, insn.getOutSet());
+                int def = defOf(insn);
+                if (def >= 0) {
+                    clear(live, def);
+                }
+                insn.forEachUse(symbol -> set(live, id(symbol)));
+            }
+            store(live, block.getInSet());
+        }
+        return !oldEntry.equals(entry);
+    }
+
+    private void store(long[] bits, Set<Symbol> set) {
+        set.clear();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                set.add(symbols.get((w << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+    }
+
+    private void numberSymbols() {
+        if (symbols == null) {
+            symbols = new ArrayList<>(Collections.nCopies(owner.getLocalCount(), null));
+        }
+        for (IRInsn insn : function.getInstructions()) {
+            insn.getDefs().forEach(this::number);
+            insn.forEachUse(this::number);
+        }
+    }
+
+    private void number(Symbol symbol) {
+        if (symbol.getFunction() == owner) {
+            symbols.set(symbol.getId(), symbol);
+        } else if (!others.containsKey(symbol)) {
+            others.put(symbol, symbols.size());
+            symbols.add(symbol);
+        }
+    }
+
+    private int id(Symbol symbol) {
+        return symbol.getFunction() == owner ? symbol.getId() : others.get(symbol);
+    }
+
+    private int defOf(IRInsn insn) {
+        for (Symbol def : insn.getDefs()) {
+            return id(def);
+        }
+        return -1;
+    }
+
+    private int[] postorder() {
+        // postorder of the CFG is reverse postorder of the reversed CFG, the natural order for a backward problem
+        int n = blocks.size();
+        int[] result = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] next = new int[n];    // next successor to visit per stacked block
+        for (int root = 0; root < n; root++) {   // block 0 first, then anything unreachable
+            if (visited[root]) {
+                continue;
+            }
+            int top = 0;
+            stack[0] = root;
+            visited[root] = true;
+            while (top >= 0) {
+                int b = stack[top];
+                if (next[b] < successors[b].length) {
+                    int s = successors[b][next[b]++];
+                    if (!visited[s]) {
+                        visited[s] = true;
+                        stack[++top] = s;
+                    }
+                } else {
+                    result[count++] = b;
+                    top--;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void set(long[] bits, int id) {
+        bits[id >>> 6] |= 1L << id;
+    }
+
+    private static void clear(long[] bits, int id) {
+        bits[id >>> 6] &= ~(1L << id);
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= source[w];
+        }
+    }
+}
@@ -1,67 +1,140 @@
 package org.lulz.tiger.backend.liveness;
 
+import org.jgrapht.Graph;
 import org.jgrapht.Graphs;
+import org.jgrapht.alg.connectivity.GabowStrongConnectivityInspector;
 import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-import org.jgrapht.io.*;
+import org.lulz.tiger.backend.cache.CacheSession;
 import org.lulz.tiger.backend.codegen.MIPSCodeGenerator;
 import org.lulz.tiger.backend.coloring.RegColoring;
+import org.lulz.tiger.common.Diagnostics;
+import org.lulz.tiger.common.Parallelism;
 import org.lulz.tiger.common.ir.BasicBlock;
 import org.lulz.tiger.common.ir.IRFunction;
 import org.lulz.tiger.common.ir.IRInsn;
 import org.lulz.tiger.common.ir.IRListing;
+import org.lulz.tiger.common.ir.Opcode;
 import org.lulz.tiger.common.symbol.Symbol;
 
-import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class LivenessAnalyzer implements Runnable {
     private IRListing listing;
+    private boolean boundarySetsOnly;
+    private Diagnostics diagnostics;
+    private CacheSession cache;
 
     public LivenessAnalyzer(IRListing listing) {
+        this(listing, false, Diagnostics.silent());
+    }
+
+    // boundarySetsOnly keeps live sets at block boundaries only and recomputes instruction sets when needed
+    public LivenessAnalyzer(IRListing listing, boolean boundarySetsOnly, Diagnostics diagnostics) {
         this.listing = listing;
+        this.boundarySetsOnly = boundarySetsOnly;
+        this.diagnostics = diagnostics;
+    }
+
+    // functions whose assembly is cached are not colored
+    public void setCache(CacheSession cache) {
+        this.cache = cache;
     }
 
     @Override
     public void run() {
-        constructLiveSets();
-        listing.getFunctions().forEach(this::analyzeFunction);
+        if (boundarySetsOnly) {
+            listing.getFunctions().forEach(f -> f.getBasicBlocks().forEach(BasicBlock::initializeBoundarySets));
+        } else {
+            listing.getFunctions().forEach(f -> f.getBasicBlocks().forEach(BasicBlock::initializeSets));
+        }
+
+        // CALL uses read the callee's entry live set, so solve one call graph SCC at a time with callees first.
+        // SCCs that do not depend on each other are solved concurrently, and each function's webs are built and
+        // colored as soon as its own SCC is solved.
+        Graph<IRFunction, DefaultEdge> callGraph = listing.getCallGraph();
+        Map<IRFunction, Set<IRFunction>> components = new HashMap<>();
+        for (Set<IRFunction> component : new GabowStrongConnectivityInspector<>(callGraph).stronglyConnectedSets()) {
+            component.forEach(f -> components.put(f, component));
+        }
+        Map<Set<IRFunction>, CompletableFuture<Void>> scheduled = new IdentityHashMap<>();
+        List<IRFunction> functions = listing.getFunctions();
+        String[] dumps = new String[functions.size()];
+        List<CompletableFuture<Void>> colorings = new ArrayList<>();
+        for (IRFunction function : functions) {
+            scheduleComponent(components.get(function), callGraph, components, scheduled);
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            IRFunction function = functions.get(i);
+            int index = i;
+            colorings.add(scheduled.get(components.get(function))
+                    .thenRunAsync(() -> {
+                        if (cache == null || !cache.lookup(function)) {
+                            dumps[index] = analyzeFunction(function);
+                        }
+                    }, Parallelism.executor()));
+        }
+        CompletableFuture.allOf(colorings.toArray(new CompletableFuture[0])).join();
+
+        // debug output in source order, whatever order the functions finished in
+        for (String dump : dumps) {
+            if (dump != null) {
+                diagnostics.println(Diagnostics.Level.DEBUG, dump);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> scheduleComponent(Set<IRFunction> component, Graph<IRFunction, DefaultEdge> callGraph,
+                                                      Map<IRFunction, Set<IRFunction>> components,
+                                                      Map<Set<IRFunction>, CompletableFuture<Void>> scheduled) {
+        CompletableFuture<Void> future = scheduled.get(component);
+        if (future != null) {
+            return future;
+        }
+        List<CompletableFuture<Void>> callees = new ArrayList<>();
+        boolean recursive = false;
+        for (IRFunction function : component) {
+            for (IRFunction callee : Graphs.successorListOf(callGraph, function)) {
+                if (component.contains(callee)) {
+                    recursive = true;
+                } else {
+                    callees.add(scheduleComponent(components.get(callee), callGraph, components, scheduled));
+                }
+            }
+        }
+        boolean iterate = recursive;
+        future = CompletableFuture.allOf(callees.toArray(new CompletableFuture[0]))
+                .thenRunAsync(() -> solveComponent(component, iterate), Parallelism.executor());
+        scheduled.put(component, future);
+        return future;
     }
 
-    private void constructLiveSets() {
-        listing.getFunctions().forEach(f -> f.getBasicBlocks().forEach(BasicBlock::initializeSets));
+    private void solveComponent(Set<IRFunction> component, boolean recursive) {
+        List<LiveSetSolver> solvers = new ArrayList<>();
+        component.forEach(f -> solvers.add(new LiveSetSolver(f)));
 
+        // within a recursive SCC, iterate until no entry live set changes
         boolean modified;
         do {
             modified = false;
-
-            for (IRFunction function : listing.getFunctions()) {
-                for (BasicBlock block : function.getBasicBlocks()) {
-                    ListIterator<IRInsn> li = block.listIterator(block.size());
-                    while (li.hasPrevious()) {  // reverse order
-                        IRInsn insn = li.previous();
-                        Set<Symbol> newSet = new HashSet<>(insn.getOutSet());
-                        newSet.removeAll(insn.getDefs());
-                        newSet.addAll(insn.getUses());
-                        modified |= insn.getInSet().addAll(newSet);
-                    }
-                }
-
-                for (BasicBlock block : function.getBasicBlocks()) {
-                    for (BasicBlock succ : Graphs.successorListOf(function.getCfg(), block)) {
-                        modified |= block.getOutSet().addAll(succ.getInSet());
-                    }
-                }
+            for (LiveSetSolver solver : solvers) {
+                modified |= solver.solve();
             }
-        } while (modified);
+        } while (modified && recursive);
     }
 
-    private void analyzeFunction(IRFunction function) {
+    // builds and colors the function's webs, returning its debug dump if enabled
+    private String analyzeFunction(IRFunction function) {
         // 1. Generate webs within each block
-        Map<BasicBlock, Map<Symbol, Web>> inWebs = new HashMap<>();
-        Map<BasicBlock, Map<Symbol, Web>> outWebs = new HashMap<>();
-        Map<BasicBlock, Set<Web>> blockWebs = new HashMap<>();
-        Set<Set<Web>> interference = new HashSet<>();
+        // webs are numbered in creation order, blocks by their index and symbols by their id within the function
+        Symbol funcSymbol = function.getSymbol();
+        List<Web> webs = new ArrayList<>();
+        Web[] liveWeb = new Web[funcSymbol.getLocalCount()];    // by symbol id, webs live at the current insn
+        List<List<Web>> inWebs = new ArrayList<>();
+        List<List<Web>> outWebs = new ArrayList<>();
+        List<List<Web>> blockWebs = new ArrayList<>();
+        WebPairs interference = new WebPairs();   // edges between web ids, recorded before webs are merged
+        WebPairs moves = new WebPairs();
 
         for (BasicBlock block : function.getBasicBlocks()) {
             // Build liveMap for this block
@@ -71,213 +144,276 @@ public class LivenessAnalyzer implements Runnable {
                 throw new RuntimeException("empty block");
             }
 
-            Set<Web> blockWeb = new HashSet<>();
-            Map<Symbol, Web> liveWeb = new HashMap<>();
-            Map<Symbol, Web> inWeb = new HashMap<>();
+            List<Web> blockWeb = new ArrayList<>();
+            List<Web> live = new ArrayList<>();     // the non-null entries of liveWeb, in creation order
+            List<Web> inWeb = new ArrayList<>();
 
             // First Instruction
+            List<Set<Symbol>> liveSets = block.getInstructionSets();
             IRInsn insn = block.get(0);
-            Symbol funcSymbol = insn.getFunction().getSymbol();
-            Set<Web> overlap = new HashSet<>();
             Set<Symbol> defSet, outSet;
-            Set<Symbol> inSet = insn.getInSet();
+            Set<Symbol> inSet = liveSets.get(0);
 
-            for (Symbol inSymbol: inSet) {
+            for (Symbol inSymbol: inIdOrder(inSet)) {
                 if (inSymbol.getFunction() == funcSymbol && !inSymbol.isArgument()) {
-                    Web web = new Web(inSymbol);
-                    inWeb.put(inSymbol, web);
-                    liveWeb.put(inSymbol, web);
-                    web.getRange().add(insn);
+                    Web web = newWeb(inSymbol, webs);
+                    inWeb.add(web);
+                    liveWeb[inSymbol.getId()] = web;
+                    live.add(web);
+                    web.getRange().set(insn.getIndex());
                 }
             }
-            interference.add(overlap);
 
             // Rest of Instructions
-            for (IRInsn irInsn : block) {
-                insn = irInsn;
-                funcSymbol = insn.getFunction().getSymbol();
-                overlap = new HashSet<>();
+            for (int i = 0; i < blockSize; i++) {
+                insn = block.get(i);
                 defSet = insn.getDefs();
-                inSet = insn.getInSet();
-                outSet = insn.getOutSet();
+                inSet = liveSets.get(i);
+                outSet = liveSets.get(i + 1);
 
                 // add current instruction to the valid variable range
                 for (Symbol inSymbol : inSet) {
                     if (inSymbol.getFunction() == funcSymbol && !inSymbol.isArgument()) {
-                        Web web = liveWeb.get(inSymbol);
-                        web.getRange().add(insn);
-                        if (outSet.contains(inSymbol))
-                            overlap.add(web);
+                        Web web = liveWeb[inSymbol.getId()];
+                        web.getRange().set(insn.getIndex());
                     }
                 }
                 for (Symbol defSymbol : defSet) {
                     if (defSymbol.getFunction() == funcSymbol && !defSymbol.isArgument()) {
-                        Web web = liveWeb.get(defSymbol);
+                        Web web = liveWeb[defSymbol.getId()];
                         if (web == null) {
-                            web = new Web(defSymbol);
-                            liveWeb.put(defSymbol, web);
+                            web = newWeb(defSymbol, webs);
+                            liveWeb[defSymbol.getId()] = web;
+                            live.add(web);
                         }
-                        web.getRange().add(insn);
+                        web.getRange().set(insn.getIndex());
                         web.incSpillCost();
-                        overlap.add(web);
+                        // the defined web interferes with everything live out of the instruction, except the source of a move
+                        addDefEdges(web, moveSource(insn, funcSymbol, liveWeb), outSet, funcSymbol, liveWeb,
+                                interference, moves);
                     }
                 }
                 for (Symbol useSymbol : insn.getUses()) {
                     if (useSymbol.getFunction() == funcSymbol && !useSymbol.isArgument()) {
-                        Web web = liveWeb.get(useSymbol);
+                        Web web = liveWeb[useSymbol.getId()];
                         web.incSpillCost();
                     }
                 }
-                Iterator<Symbol> liveIterator = liveWeb.keySet().iterator();
+                Iterator<Web> liveIterator = live.iterator();
                 while (liveIterator.hasNext()) {
-                    Symbol liveSymbol = liveIterator.next();
-                    if (liveSymbol.getFunction() == funcSymbol && !liveSymbol.isArgument()) {
-                        if (!outSet.contains(liveSymbol)) {
-                            Web killWeb = liveWeb.get(liveSymbol);
-                            blockWeb.add(killWeb);
-                            liveIterator.remove();
-                        }
+                    Web killWeb = liveIterator.next();
+                    if (!outSet.contains(killWeb.getSymbol())) {
+                        blockWeb.add(killWeb);
+                        liveWeb[killWeb.getSymbol().getId()] = null;
+                        liveIterator.remove();
                     }
                 }
-                interference.add(overlap);
             }
-            inWebs.put(block, inWeb);
-            outWebs.put(block, liveWeb);
-            blockWebs.put(block, blockWeb);
+            live.forEach(web -> liveWeb[web.getSymbol().getId()] = null);
+            inWebs.add(inWeb);
+            outWebs.add(live);
+            blockWebs.add(blockWeb);
         }
 
         // 2. Merge blocks' in/out webs according to the control flow
-        // Setup Disjoint Sets
-        DisjointWeb disjointWeb = new DisjointWeb();
-        for (Map<Symbol, Web> inWeb: inWebs.values()) {
-            disjointWeb.addWebs(inWeb.values());
-        }
-        for (Map<Symbol, Web> outWeb: outWebs.values()) {
-            disjointWeb.addWebs(outWeb.values());
-        }
+        DisjointWeb disjointWeb = new DisjointWeb(webs);
         // Union appropriate sets
+        Web[] outBySymbol = liveWeb;
         for (BasicBlock block : function.getBasicBlocks()) {
-            Map<Symbol, Web> outCurr = outWebs.get(block);
+            List<Web> outCurr = outWebs.get(block.getIndex());
+            outCurr.forEach(web -> outBySymbol[web.getSymbol().getId()] = web);
             for (BasicBlock succ: Graphs.successorListOf(function.getCfg(), block)) {
-                Map<Symbol, Web> inSucc = inWebs.get(succ);
-                for (Symbol inSymbol : inSucc.keySet()) {
-                    Web outWeb = outCurr.get(inSymbol);
-                    Web inWeb = inSucc.get(inSymbol);
+                for (Web inWeb : inWebs.get(succ.getIndex())) {
+                    Web outWeb = outBySymbol[inWeb.getSymbol().getId()];
                     disjointWeb.union(inWeb, outWeb);
                 }
             }
+            outCurr.forEach(web -> outBySymbol[web.getSymbol().getId()] = null);
         }
 
-        Set<Web> vertices = new HashSet<>();
         // Replace union sets with one matching web
-        for (Map<Symbol, Web> inWeb: inWebs.values()) {
-            for (Map.Entry<Symbol, Web> entry: inWeb.entrySet()) {
-                Web newWeb = disjointWeb.find(entry.getValue());
-                entry.setValue(newWeb);
-                vertices.add(newWeb);
-            }
+        boolean[] isVertex = new boolean[webs.size()];
+        List<Web> vertices = new ArrayList<>();
+        for (List<Web> inWeb: inWebs) {
+            replaceWithRoots(inWeb, disjointWeb, isVertex, vertices);
         }
-        for (Set<Web> blockWeb: blockWebs.values()) {
-            Iterator<Web> blockWebIterator = blockWeb.iterator();
-            Set<Web> topWebs = new HashSet<>();
-            while (blockWebIterator.hasNext()) {
-                Web web = blockWebIterator.next();
-                Web topWeb = disjointWeb.find(web);
-                if (topWeb != null) {
-                    if (topWeb != web) {
-                        blockWebIterator.remove();
-                        topWebs.add(topWeb);
-                        vertices.add(topWeb);
-                    }
-                } else {
-                    vertices.add(web);
-                }
-            }
-            blockWeb.addAll(topWebs);
+        for (List<Web> blockWeb: blockWebs) {
+            replaceWithRoots(blockWeb, disjointWeb, isVertex, vertices);
         }
-        for (Map<Symbol, Web> outWeb: outWebs.values()) {
-            for (Map.Entry<Symbol, Web> entry: outWeb.entrySet()) {
-                Web newWeb = disjointWeb.find(entry.getValue());
-                entry.setValue(newWeb);
-                vertices.add(newWeb);
-            }
+        for (List<Web> outWeb: outWebs) {
+            replaceWithRoots(outWeb, disjointWeb, isVertex, vertices);
         }
 
-        for (Set<Web> overlap: interference) {
-            Iterator<Web> overlapIterator = overlap.iterator();
-            Set<Web> newWebs = new HashSet<>();
-            while (overlapIterator.hasNext()) {
-                Web web = overlapIterator.next();
-                Web newWeb = disjointWeb.find(web);
-                if (newWeb != null && newWeb != web) {
-                    overlapIterator.remove();
-                    newWebs.add(newWeb);
-                }
+        // Webs live into the function have no definition to hang their edges on, so they interfere pairwise
+        List<Web> entryWebs = inWebs.get(0);
+        for (int i = 0; i < entryWebs.size() - 1; i++) {
+            for (int j = i + 1; j < entryWebs.size(); j++) {
+                interference.add(entryWebs.get(i), entryWebs.get(j));
             }
-            overlap.addAll(newWebs);
+        }
+
+        // the graph renumbers the webs, so resolve every recorded id to its root first
+        Web[] roots = new Web[webs.size()];
+        for (Web web : webs) {
+            roots[web.getId()] = disjointWeb.find(web);
         }
 
         // 3. Build Graph
-        SimpleGraph<Web, DefaultEdge> simpleGraph = new SimpleGraph<>(DefaultEdge.class);
-        // Add vertices
-        for (Web web: vertices) {
-            simpleGraph.addVertex(web);
+        InterferenceGraph graph = new InterferenceGraph(vertices);
+        for (int i = 0; i < interference.size(); i++) {
+            graph.addEdge(roots[interference.first(i)], roots[interference.second(i)]);
         }
-        // Add edges
-        for (Set<Web> overlap: interference) {
-            List<Web> overlapList = new ArrayList<>(overlap);
-            int overlapListSize = overlapList.size();
-            for (int i = 0; i < overlapListSize - 1; i++) {
-                for (int j = i + 1; j < overlapListSize; j++) {
-                    simpleGraph.addEdge(overlapList.get(i), overlapList.get(j));
-                }
-            }
+        for (int i = 0; i < moves.size(); i++) {
+            graph.addMove(roots[moves.first(i)], roots[moves.second(i)]);
         }
 
         // DEBUG: WEB IN/OUT SETS
+        StringBuilder dump = null;
+        if (diagnostics.isEnabled(Diagnostics.Level.DEBUG)) {
+            dump = new StringBuilder();
+            printWebs(dump, function, inWebs, blockWebs, outWebs);
+        }
+
+        int NUM_REG_AVAIL = MIPSCodeGenerator.GP_REGS.length;
+        RegColoring rc = new RegColoring(graph, NUM_REG_AVAIL);
+        rc.run();
+
+        function.setColoredGraph(graph);
+
+        // DEBUG: COLORING
+        if (dump == null) {
+            return null;
+        }
+        printColoring(dump, graph);
+        return dump.toString();
+    }
+
+    private void printWebs(StringBuilder sb, IRFunction function, List<List<Web>> inWebs, List<List<Web>> blockWebs,
+                           List<List<Web>> outWebs) {
         int count = 1;
         for (BasicBlock block : function.getBasicBlocks()) {
-            System.out.println("===== Block: " + count + " =====");
+            sb.append("===== Block: ").append(count).append(" =====\n");
             for (IRInsn instr: block) {
-                System.out.println(instr);
+                sb.append(instr).append("\n");
             }
 
-            Map<Symbol, Web> inWeb = inWebs.get(block);
-            System.out.println("#### IN SET ####");
-            for (Web web: inWeb.values()) {
-                System.out.println("Symbol: " + web.getSymbol() + ", Spill: " + web.getSpillCost() + ", Hash: "  + web.hashCode() + ", Range: "  + web.getRange().size());
-            }
+            sb.append("#### IN SET ####\n");
+            inWebs.get(block.getIndex()).forEach(web -> appendWeb(sb, web));
+            sb.append("#### INTERNAL ####\n");
+            blockWebs.get(block.getIndex()).forEach(web -> appendWeb(sb, web));
+            sb.append("#### OUT SET ####\n");
+            outWebs.get(block.getIndex()).forEach(web -> appendWeb(sb, web));
+            sb.append("\n");
+            count++;
+        }
+    }
+
+    private void appendWeb(StringBuilder sb, Web web) {
+        sb.append("Symbol: ").append(web.getSymbol()).append(", Spill: ").append(web.getSpillCost())
+                .append(", Hash: ").append(web.hashCode()).append(", Range: ").append(web.getRange().cardinality())
+                .append("\n");
+    }
+
+    private void printColoring(StringBuilder sb, InterferenceGraph graph) {
+        sb.append("Color Nodes: \n");
+        graph.getWebs().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
+                .forEach(v -> sb.append(v.getSymbol()).append(": ").append(v.getColor()).append("\n"));
+
+        sb.append("Spilled Nodes: \n");
+        graph.getWebs().stream().filter(v -> v.getColor() == RegColoring.NO_COLOR)
+                .forEach(v -> sb.append(v.getSymbol()).append("\n"));
+    }
 
-            Set<Web> liveWeb = blockWebs.get(block);
-            System.out.println("#### INTERNAL ####");
-            for (Web web: liveWeb) {
-                System.out.println("Symbol: " + web.getSymbol() + ", Spill: " + web.getSpillCost() + ", Hash: "  + web.hashCode() + ", Range: "  + web.getRange().size());
+    private void addDefEdges(Web def, Web source, Set<Symbol> outSet, Symbol funcSymbol, Web[] liveWeb,
+                             WebPairs interference, WebPairs moves) {
+        for (Symbol outSymbol : inIdOrder(outSet)) {
+            if (outSymbol.getFunction() == funcSymbol && !outSymbol.isArgument()) {
+                Web web = liveWeb[outSymbol.getId()];
+                if (web != def && web != source) {
+                    interference.add(def.getId(), web.getId());
+                }
             }
+        }
+        if (source != null && source != def) {
+            moves.add(def.getId(), source.getId());
+        }
+    }
 
-            Map<Symbol, Web> outWeb = outWebs.get(block);
-            System.out.println("#### OUT SET ####");
-            for (Web web: outWeb.values()) {
-                System.out.println("Symbol: " + web.getSymbol() + ", Spill: " + web.getSpillCost() + ", Hash: "  + web.hashCode() + ", Range: "  + web.getRange().size());
+    // Live sets hash their symbols by name, so where the order of a set decides the webs, their edges and with them the
+    // coloring, it is walked by id instead; the code then does not depend on the names, which the function cache ignores
+    private static List<Symbol> inIdOrder(Set<Symbol> set) {
+        List<Symbol> symbols = new ArrayList<>(set);
+        symbols.sort(Comparator.comparingInt(Symbol::getId));
+        return symbols;
+    }
+
+    // the web copied by a register-to-register ASSIGN, or null; a widening assign converts and is not a move
+    private Web moveSource(IRInsn insn, Symbol funcSymbol, Web[] liveWeb) {
+        if (insn.getOpcode() != Opcode.ASSIGN) {
+            return null;
+        }
+        Symbol target = insn.getOperands()[0];
+        Symbol source = insn.getOperands()[1];
+        if (source.isConstant() || source.getFunction() != funcSymbol || source.isArgument()
+                || target.getType().getKind() != source.getType().getKind()) {
+            return null;
+        }
+        return liveWeb[source.getId()];
+    }
+
+    private Web newWeb(Symbol symbol, List<Web> webs) {
+        Web web = new Web(symbol);
+        web.setId(webs.size());
+        webs.add(web);
+        return web;
+    }
+
+    // replaces every web of the list with its union-find root, dropping duplicates, and collects new roots
+    private void replaceWithRoots(List<Web> list, DisjointWeb disjointWeb, boolean[] isVertex, List<Web> vertices) {
+        Set<Web> seen = new HashSet<>();
+        ListIterator<Web> iterator = list.listIterator();
+        while (iterator.hasNext()) {
+            Web root = disjointWeb.find(iterator.next());
+            if (!seen.add(root)) {
+                iterator.remove();
+                continue;
+            }
+            iterator.set(root);
+            if (!isVertex[root.getId()]) {
+                isVertex[root.getId()] = true;
+                vertices.add(root);
             }
-            System.out.println();
-            count++;
         }
+    }
 
-        int NUM_REG_AVAIL = MIPSCodeGenerator.GP_REGS.length;
-        RegColoring rc = new RegColoring(simpleGraph, NUM_REG_AVAIL);
-        rc.run();
+    // growable list of web id pairs
+    private static class WebPairs {
+        private int[] pairs = new int[64];
+        private int size;
 
-        function.setColoredGraph(simpleGraph);
+        void add(Web a, Web b) {
+            add(a.getId(), b.getId());
+        }
 
-        // DEBUG: COLORING
-        System.out.println("Color Nodes: ");
-        simpleGraph.vertexSet().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
-                .forEach(v -> System.out.println(v.getSymbol() + ": " + v.getColor()));
+        void add(int a, int b) {
+            if (2 * size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[2 * size] = a;
+            pairs[2 * size + 1] = b;
+            size++;
+        }
 
-        System.out.println("Spilled Nodes: ");
-        simpleGraph.vertexSet().stream().filter(v -> v.getColor() == RegColoring.NO_COLOR)
-                .forEach(v -> System.out.println(v.getSymbol()));
-        System.out.println();
+        int size() {
+            return size;
+        }
 
+        int first(int i) {
+            return pairs[2 * i];
+        }
+
+        int second(int i) {
+            return pairs[2 * i + 1];
+        }
     }
 }
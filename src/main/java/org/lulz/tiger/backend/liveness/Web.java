@@ -3,36 +3,43 @@ package org.lulz.tiger.backend.liveness;
 import org.lulz.tiger.backend.codegen.MIPSCodeGenerator;
 import org.lulz.tiger.backend.codegen.MIPSRegister;
 import org.lulz.tiger.backend.coloring.RegColoring;
-import org.lulz.tiger.common.ir.IRInsn;
 import org.lulz.tiger.common.symbol.Symbol;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
 
 public class Web implements Comparable<Web> {
+    private int id;     // dense per function, renumbered when the interference graph is built
     private Symbol symbol;
-    private Set<IRInsn> range;
+    private BitSet range;   // instruction numbers covered by this web
     private int color = RegColoring.NO_COLOR;
     private int spillCost;
     private MIPSRegister register;
 
     public Web(Symbol symbol) {
         this.symbol = symbol;
-        this.range = new HashSet<>();
+        this.range = new BitSet();
         this.spillCost = 0;
     }
 
-    public Web(Symbol symbol, Set<IRInsn> range) {
+    public Web(Symbol symbol, BitSet range) {
         this.symbol = symbol;
         this.range = range;
         this.spillCost = 0;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     public Symbol getSymbol() {
         return symbol;
     }
 
-    public Set<IRInsn> getRange() {
+    public BitSet getRange() {
         return range;
     }
 
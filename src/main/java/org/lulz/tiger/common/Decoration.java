@@ -1,45 +1,90 @@
 package org.lulz.tiger.common;
 
 import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeProperty;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.type.Type;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Per-compilation annotations on the parse tree, shared by the semantic passes and IR generation.
+// Each compilation owns one instance, so independent compilations can run concurrently.
+// All annotations of a node share one entry, so the passes decorating a node in the same walk do one lookup each.
 public class Decoration {
-    private static ParseTreeProperty<Integer> scope = new ParseTreeProperty<>();
-    private static ParseTreeProperty<Symbol> symbol = new ParseTreeProperty<>();
-    private static ParseTreeProperty<Type> type = new ParseTreeProperty<>();
-    private static ParseTreeProperty<Boolean> compar = new ParseTreeProperty<>();
+    private Decoration parent;
+    private Map<ParseTree, Entry> entries;
+
+    public Decoration() {
+        entries = new IdentityHashMap<>(1024);
+    }
+
+    // sees the annotations of parent and keeps its own, so passes over disjoint subtrees can run concurrently as long
+    // as parent is no longer changed
+    public Decoration(Decoration parent) {
+        this.parent = parent;
+        this.entries = new IdentityHashMap<>();
+    }
+
+    public int getScopeId(ParseTree ctx) {
+        return lookup(ctx).scope;
+    }
+
+    public void putScopeId(ParseTree ctx, int scopeId) {
+        entry(ctx).scope = scopeId;
+    }
 
-    public static int getScopeId(ParseTree ctx) {
-        return scope.get(ctx);
+    public Symbol getSymbol(ParseTree ctx) {
+        Entry entry = lookup(ctx);
+        return entry != null ? entry.symbol : null;
     }
 
-    public static void putScopeId(ParseTree ctx, int scopeId) {
-        scope.put(ctx, scopeId);
+    public void putSymbol(ParseTree ctx, Symbol s) {
+        entry(ctx).symbol = s;
     }
 
-    public static Symbol getSymbol(ParseTree ctx) {
-        return symbol.get(ctx);
+    public Type getType(ParseTree ctx) {
+        Entry entry = lookup(ctx);
+        return entry != null ? entry.type : null;
     }
 
-    public static void putSymbol(ParseTree ctx, Symbol s) {
-        symbol.put(ctx, s);
+    public void putType(ParseTree ctx, Type typeVal) {
+        entry(ctx).type = typeVal;
     }
 
-    public static Type getType(ParseTree ctx) {
-        return type.get(ctx);
+    public boolean isComparison(ParseTree ctx) {
+        return lookup(ctx).comparison;
     }
 
-    public static void putType(ParseTree ctx, Type typeVal) {
-        type.put(ctx, typeVal);
+    public void setComparison(ParseTree ctx, boolean b) {
+        entry(ctx).comparison = b;
     }
 
-    public static boolean isComparison(ParseTree ctx) {
-        return compar.get(ctx);
+    private Entry lookup(ParseTree ctx) {
+        Entry entry = entries.get(ctx);
+        return entry != null || parent == null ? entry : parent.lookup(ctx);
     }
 
-    public static void setComparison(ParseTree ctx, boolean b) {
-        compar.put(ctx, b);
+    // the entry to change, copied from parent first so parent stays as it is
+    private Entry entry(ParseTree ctx) {
+        return entries.computeIfAbsent(ctx, k -> {
+            Entry inherited = parent != null ? parent.lookup(k) : null;
+            return inherited != null ? inherited.copy() : new Entry();
+        });
+    }
+
+    private static class Entry {
+        Integer scope;
+        Symbol symbol;
+        Type type;
+        Boolean comparison;
+
+        Entry copy() {
+            Entry copy = new Entry();
+            copy.scope = scope;
+            copy.symbol = symbol;
+            copy.type = type;
+            copy.comparison = comparison;
+            return copy;
+        }
     }
 }
@@ -0,0 +1,43 @@
+package org.lulz.tiger.common;
+
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
+// Sink for compiler debug dumps. Messages above the configured level are dropped before they are built.
+public class Diagnostics {
+    public enum Level {
+        SILENT,     // nothing
+        INFO,       // progress messages and the IR listing
+        DEBUG       // web sets, spill costs and coloring
+    }
+
+    private static final Diagnostics SILENT = new Diagnostics(Level.SILENT, null);
+
+    private Level level;
+    private PrintStream out;
+
+    public Diagnostics(Level level, PrintStream out) {
+        this.level = level;
+        this.out = out;
+    }
+
+    public static Diagnostics silent() {
+        return SILENT;
+    }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.SILENT && messageLevel.compareTo(level) <= 0;
+    }
+
+    public void println(Level messageLevel, String message) {
+        if (isEnabled(messageLevel)) {
+            out.println(message);
+        }
+    }
+
+    public void println(Level messageLevel, Supplier<String> message) {
+        if (isEnabled(messageLevel)) {
+            out.println(message.get());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.lulz.tiger.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+// Executor for the per-function tasks of the compiler. CompletableFuture replaces a single-worker common pool with a
+// new thread per task, so on one CPU the tasks run on the thread that schedules or completes them instead.
+public class Parallelism {
+    private static final Executor EXECUTOR =
+            ForkJoinPool.getCommonPoolParallelism() > 1 ? ForkJoinPool.commonPool() : Runnable::run;
+
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+
+    // number of tasks that run at once
+    public static int parallelism() {
+        return ForkJoinPool.getCommonPoolParallelism();
+    }
+
+    // waits for the task and rethrows what it threw, so that callers see the same exceptions as if it had run inline
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
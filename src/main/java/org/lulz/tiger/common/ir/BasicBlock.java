@@ -3,13 +3,24 @@ package org.lulz.tiger.common.ir;
 import org.lulz.tiger.common.symbol.Symbol;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class BasicBlock extends ArrayList<IRInsn> {
+    private int index;  // position in the function's block list
     private Set<Symbol> inSet;
     private Set<Symbol> outSet;
 
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public IRInsn getLeader() {
         return get(0);
     }
@@ -29,6 +40,43 @@ public class BasicBlock extends ArrayList<IRInsn> {
         outSet = lastSet;
     }
 
+    // stores live sets only at the block boundaries, instruction sets are recomputed on demand
+    public void initializeBoundarySets() {
+        inSet = new HashSet<>();
+        outSet = new HashSet<>();
+        for (IRInsn insn : this) {
+            insn.setInSet(null);
+            insn.setOutSet(null);
+        }
+    }
+
+    public boolean hasInstructionSets() {
+        return isEmpty() || getLeader().getStoredInSet() != null;
+    }
+
+    // live-in set of every instruction, followed by the block's live-out set. Without stored instruction sets
+    // this is a backward scan from the live-out set, so callers walking a block should fetch it once.
+    public List<Set<Symbol>> getInstructionSets() {
+        List<Set<Symbol>> sets = new ArrayList<>(Collections.nCopies(size() + 1, null));
+        sets.set(size(), outSet);
+        if (hasInstructionSets()) {
+            for (int i = 0; i < size(); i++) {
+                sets.set(i, get(i).getStoredInSet());
+            }
+            return sets;
+        }
+        Set<Symbol> live = outSet;
+        for (int i = size() - 1; i > 0; i--) {
+            IRInsn insn = get(i);
+            live = new HashSet<>(live);
+            live.removeAll(insn.getDefs());
+            insn.forEachUse(live::add);
+            sets.set(i, live);
+        }
+        sets.set(0, inSet);
+        return sets;
+    }
+
     public Set<Symbol> getInSet() {
         return inSet;
     }
@@ -41,9 +89,11 @@ public class BasicBlock extends ArrayList<IRInsn> {
     public String toString() {
         // for use with CFG exporter. \\l is left-aligned newline
         StringBuilder sb = new StringBuilder();
-        for (IRInsn insn : this) {
-            if (!insn.isLabel() && insn.getInSet() != null) {
-                sb.append("- ").append(insn.getInSet()).append("\\l");
+        List<Set<Symbol>> sets = inSet != null ? getInstructionSets() : null;
+        for (int i = 0; i < size(); i++) {
+            IRInsn insn = get(i);
+            if (!insn.isLabel() && sets != null) {
+                sb.append("- ").append(sets.get(i)).append("\\l");
             }
             sb.append(insn).append("\\l");
         }
@@ -0,0 +1,363 @@
+package org.lulz.tiger.common.ir;
+
+import org.lulz.tiger.common.symbol.Symbol;
+import org.lulz.tiger.common.symbol.SymbolClass;
+import org.lulz.tiger.common.symbol.SymbolTable;
+import org.lulz.tiger.common.type.ArrayType;
+import org.lulz.tiger.common.type.FunctionType;
+import org.lulz.tiger.common.type.Type;
+import org.lulz.tiger.common.type.TypeKind;
+import org.lulz.tiger.common.type.TypeManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// A compact binary form of a listing. A symbol table section holds every symbol the listing refers to, with the frame
+// layout of variables and functions, and is followed by the instructions of each function, whose operands are indices
+// into the symbol table. Every variable of a function's frame is kept, used or not, so a listing read back compiles to
+// the same code as the listing that was written. Numbers are stored as varints.
+public class IRBinary {
+    private static final int MAGIC = 0x54495242;    // "TIRB"
+    private static final int VERSION = 1;
+    private static final int LABEL = 0xff;          // in place of an opcode
+
+    public static void write(IRListing listing, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        Map<Symbol, Integer> indices = new IdentityHashMap<>();
+        List<Symbol> table = new ArrayList<>();
+        for (IRFunction function : listing.getFunctions()) {
+            index(function.getSymbol(), indices, table);
+            for (Symbol local : function.getSymbol().getLocals()) {
+                index(local, indices, table);
+            }
+        }
+        for (IRFunction function : listing.getFunctions()) {
+            for (IRInsn insn : function.getInstructions()) {
+                if (insn.isLabel()) {
+                    index(insn.getLabel(), indices, table);
+                } else {
+                    for (Symbol operand : insn.getOperands()) {
+                        index(operand, indices, table);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < table.size(); i++) {
+            Symbol symbol = table.get(i);
+            if (symbol.getSymbolClass() == SymbolClass.VAR) {
+                index(symbol.getFunction(), indices, table);
+            }
+            for (Symbol parameter : symbol.getParameters()) {
+                index(parameter, indices, table);
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(out, table.size());
+        for (Symbol symbol : table) {
+            out.writeByte(symbol.getSymbolClass().ordinal());
+            switch (symbol.getSymbolClass()) {
+                case ICONST:
+                    out.writeInt(symbol.getIntVal());
+                    break;
+                case FCONST:
+                    out.writeInt(Float.floatToIntBits(symbol.getFloatVal()));
+                    break;
+                case VAR:
+                    out.writeUTF(symbol.getName());
+                    writeType(out, symbol.getType());
+                    writeVarint(out, indices.get(symbol.getFunction()));
+                    writeVarint(out, symbol.getFrameIndex());
+                    writeVarint(out, symbol.getId());
+                    out.writeBoolean(symbol.isArgument());
+                    break;
+                case FUNCTION:
+                    out.writeUTF(symbol.getName());
+                    writeType(out, symbol.getType());
+                    writeVarint(out, symbol.getFrameSize());
+                    writeVarint(out, symbol.getLocalCount());
+                    writeVarint(out, symbol.getParameters().size());
+                    for (Symbol parameter : symbol.getParameters()) {
+                        writeVarint(out, indices.get(parameter));
+                    }
+                    break;
+                default:
+                    out.writeUTF(symbol.getName());
+            }
+        }
+
+        writeVarint(out, listing.getFunctions().size());
+        for (IRFunction function : listing.getFunctions()) {
+            writeVarint(out, indices.get(function.getSymbol()));
+            writeVarint(out, function.getInstructions().size());
+            for (IRInsn insn : function.getInstructions()) {
+                if (insn.isLabel()) {
+                    out.writeByte(LABEL);
+                    writeVarint(out, indices.get(insn.getLabel()));
+                } else {
+                    out.writeByte(insn.getOpcode().ordinal());
+                    writeVarint(out, insn.getOperands().length);
+                    for (Symbol operand : insn.getOperands()) {
+                        writeVarint(out, indices.get(operand));
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static void index(Symbol symbol, Map<Symbol, Integer> indices, List<Symbol> table) {
+        if (!indices.containsKey(symbol)) {
+            indices.put(symbol, table.size());
+            table.add(symbol);
+        }
+    }
+
+    // malformed input is reported as an IRSyntaxException with line 0
+    public static IRListing read(InputStream stream) throws IOException {
+        try {
+            return read(new DataInputStream(new BufferedInputStream(stream)));
+        } catch (EOFException | UTFDataFormatException e) {
+            throw new IRSyntaxException(0, "malformed binary IR: unexpected end of data");
+        }
+    }
+
+    private static IRListing read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IRSyntaxException(0, "not a binary IR file");
+        }
+        if (in.readUnsignedByte() != VERSION) {
+            throw new IRSyntaxException(0, "unsupported binary IR version");
+        }
+        TypeManager typeManager = new TypeManager();
+        SymbolTable constants = new SymbolTable();
+
+        // owners and parameters may come later in the table, so they are resolved once it is read. Counts are not
+        // trusted to size anything up front; a count past the end of the data ends in EOF.
+        int size = readCount(in);
+        List<Symbol> table = new ArrayList<>();
+        Map<Symbol, Integer> owners = new HashMap<>();
+        Map<Symbol, List<Integer>> parameters = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            SymbolClass symbolClass = enumValue(SymbolClass.values(), in.readUnsignedByte());
+            Symbol symbol;
+            switch (symbolClass) {
+                case ICONST:
+                    symbol = constants.addConst(typeManager.getIntPrimitiveType(), in.readInt());
+                    break;
+                case FCONST:
+                    symbol = constants.addConst(typeManager.getFloatPrimitiveType(), Float.intBitsToFloat(in.readInt()));
+                    break;
+                case VAR:
+                    symbol = new Symbol(in.readUTF(), SymbolClass.VAR, readType(in, typeManager));
+                    if (symbol.getType().getKind() == TypeKind.FUNCTION) {
+                        throw new IRSyntaxException(0, "malformed binary IR: variable of function type");
+                    }
+                    owners.put(symbol, readCount(in));
+                    symbol.setFrameIndex(readCount(in));
+                    symbol.setId(readCount(in));
+                    symbol.setArgument(in.readBoolean());
+                    break;
+                case FUNCTION:
+                    symbol = new Symbol(in.readUTF(), SymbolClass.FUNCTION, readType(in, typeManager));
+                    if (symbol.getType().getKind() != TypeKind.FUNCTION) {
+                        throw new IRSyntaxException(0, "malformed binary IR: function without function type");
+                    }
+                    symbol.setFrameSize(readCount(in));
+                    symbol.setLocalCount(readCount(in));
+                    List<Integer> params = new ArrayList<>();
+                    for (int j = readCount(in); j > 0; j--) {
+                        params.add(readCount(in));
+                    }
+                    parameters.put(symbol, params);
+                    break;
+                default:
+                    symbol = new Symbol(in.readUTF(), symbolClass, null);
+            }
+            table.add(symbol);
+        }
+        for (Map.Entry<Symbol, Integer> owner : owners.entrySet()) {
+            owner.getKey().setFunction(symbol(table, owner.getValue(), SymbolClass.FUNCTION));
+        }
+        table.stream().filter(symbol -> symbol.getSymbolClass() == SymbolClass.VAR)
+                .sorted(Comparator.comparingInt(Symbol::getId))
+                .forEach(variable -> variable.getFunction().addLocal(variable));
+        for (Map.Entry<Symbol, List<Integer>> function : parameters.entrySet()) {
+            for (int index : function.getValue()) {
+                function.getKey().addParameter(symbol(table, index, SymbolClass.VAR));
+            }
+        }
+        IRListing listing = new IRListing();
+        Set<Symbol> read = new HashSet<>();
+        for (int i = readCount(in); i > 0; i--) {
+            Symbol function = symbol(table, readCount(in), SymbolClass.FUNCTION);
+            if (!read.add(function)) {
+                throw new IRSyntaxException(0, "malformed binary IR: function " + function.getName() + " repeated");
+            }
+            checkFrame(function);
+            listing.pushFunction(function);
+            Set<Symbol> emitted = new HashSet<>();
+            Set<Symbol> targets = new HashSet<>();
+            for (int j = readCount(in); j > 0; j--) {
+                int opcode = in.readUnsignedByte();
+                if (opcode == LABEL) {
+                    Symbol label = symbol(table, readCount(in), SymbolClass.LABEL);
+                    if (!emitted.add(label)) {
+                        throw new IRSyntaxException(0, "malformed binary IR: label " + label.getName() + " repeated");
+                    }
+                    listing.emit(label);
+                    continue;
+                }
+                Opcode op = enumValue(Opcode.values(), opcode);
+                List<Symbol> operands = new ArrayList<>();
+                for (int k = readCount(in); k > 0; k--) {
+                    operands.add(symbol(table, readCount(in), null));
+                }
+                Symbol[] array = operands.toArray(new Symbol[0]);
+                String error = IRParser.checkOperands(op, array);
+                if (error != null) {
+                    throw new IRSyntaxException(0, "malformed binary IR: " + error + " in function " + function.getName());
+                }
+                for (int k = 0; k < array.length; k++) {
+                    if (IRParser.operandClass(op, k) == SymbolClass.LABEL) {
+                        targets.add(array[k]);
+                    }
+                }
+                listing.emit(op, array);
+            }
+            targets.removeAll(emitted);
+            if (!targets.isEmpty()) {
+                throw new IRSyntaxException(0, "malformed binary IR: undefined label "
+                        + targets.iterator().next().getName() + " in function " + function.getName());
+            }
+            listing.popFunction();
+        }
+        if (listing.getFunctions().stream().noneMatch(function -> function.getName().equals("main"))) {
+            throw new IRSyntaxException(0, "no main function");
+        }
+        return listing;
+    }
+
+    // the back end indexes variables by id and addresses the frame by offset, so both must lie within the function,
+    // and finds arguments in registers by their frame offset
+    private static void checkFrame(Symbol function) {
+        List<Symbol> params = function.getParameters();
+        boolean valid = params.size() == ((FunctionType) function.getType()).getArgs().length
+                && params.size() <= IRParser.MAX_PARAMETERS;
+        for (int i = 0; i < params.size(); i++) {
+            valid &= params.get(i).getFunction() == function && params.get(i).isArgument()
+                    && params.get(i).getFrameIndex() == 4 * i;
+        }
+        if (!valid) {
+            throw new IRSyntaxException(0, "malformed binary IR: bad parameters of function " + function.getName());
+        }
+        BitSet ids = new BitSet();
+        for (Symbol local : function.getLocals()) {
+            if (local.getId() >= function.getLocalCount() || ids.get(local.getId())
+                    || (local.isArgument() && !params.contains(local))
+                    || local.getFrameIndex() + local.getMemorySize() > function.getFrameSize()) {
+                throw new IRSyntaxException(0, "malformed binary IR: bad frame slot of " + local.getName()
+                        + " in function " + function.getName());
+            }
+            ids.set(local.getId());
+        }
+    }
+
+    private static Symbol symbol(List<Symbol> table, int index, SymbolClass symbolClass) {
+        if (index >= table.size() || (symbolClass != null && table.get(index).getSymbolClass() != symbolClass)) {
+            throw new IRSyntaxException(0, "malformed binary IR: bad symbol index " + index);
+        }
+        return table.get(index);
+    }
+
+    private static <E> E enumValue(E[] values, int ordinal) {
+        if (ordinal >= values.length) {
+            throw new IRSyntaxException(0, "malformed binary IR: bad tag " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void writeType(DataOutputStream out, Type type) throws IOException {
+        out.writeByte(type.getKind().ordinal());
+        if (type.getKind() == TypeKind.ARRAY) {
+            writeType(out, ((ArrayType) type).getElementType());
+            writeVarint(out, ((ArrayType) type).getSize());
+        } else if (type.getKind() == TypeKind.FUNCTION) {
+            FunctionType functionType = (FunctionType) type;
+            writeVarint(out, functionType.getArgs().length);
+            for (Type arg : functionType.getArgs()) {
+                writeType(out, arg);
+            }
+            writeType(out, functionType.getRetVal());
+        }
+    }
+
+    private static Type readType(DataInputStream in, TypeManager typeManager) throws IOException {
+        switch (enumValue(TypeKind.values(), in.readUnsignedByte())) {
+            case INT:
+                return typeManager.getIntPrimitiveType();
+            case FLOAT:
+                return typeManager.getFloatPrimitiveType();
+            case ARRAY:
+                Type elementType = readType(in, typeManager);
+                if (elementType.getKind() != TypeKind.INT && elementType.getKind() != TypeKind.FLOAT) {
+                    throw new IRSyntaxException(0, "malformed binary IR: bad array element type");
+                }
+                return new ArrayType(elementType, readCount(in));
+            case FUNCTION:
+                List<Type> args = new ArrayList<>();
+                for (int i = readCount(in); i > 0; i--) {
+                    args.add(readType(in, typeManager));
+                }
+                return new FunctionType(args.toArray(new Type[0]), readType(in, typeManager));
+            default:
+                throw new IRSyntaxException(0, "malformed binary IR: bad type");
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IRSyntaxException(0, "malformed binary IR: varint too long");
+    }
+
+    // a count, size or index, which a varint with the top bit set would make negative
+    private static int readCount(DataInputStream in) throws IOException {
+        int value = readVarint(in);
+        if (value < 0) {
+            throw new IRSyntaxException(0, "malformed binary IR: negative count");
+        }
+        return value;
+    }
+}
@@ -2,27 +2,26 @@ package org.lulz.tiger.common.ir;
 
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-import org.lulz.tiger.backend.liveness.Web;
+import org.lulz.tiger.backend.liveness.InterferenceGraph;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.symbol.SymbolClass;
-import org.lulz.tiger.common.type.FunctionType;
-import org.lulz.tiger.common.type.Type;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class IRFunction {
     private Symbol symbol;
     private List<IRInsn> instructions = new ArrayList<>();
+    private Map<Symbol, IRInsn> labels = new HashMap<>(); // label symbol -> label instruction
     private List<BasicBlock> basicBlocks = new ArrayList<>();
     private Map<IRInsn, BasicBlock> leaderToBlock = new HashMap<>();
     private Graph<BasicBlock, DefaultEdge> cfg;
 
     // for Liveness Analyzer, DummyRegister Allocation
-    private SimpleGraph<Web, DefaultEdge> coloredGraph;
-    public void setColoredGraph(SimpleGraph<Web, DefaultEdge> g) { this.coloredGraph = g; }
-    public SimpleGraph<Web, DefaultEdge> getColoredGraph() { return this.coloredGraph; }
+    private InterferenceGraph coloredGraph;
+    public void setColoredGraph(InterferenceGraph g) { this.coloredGraph = g; }
+    public InterferenceGraph getColoredGraph() { return this.coloredGraph; }
 
     public IRFunction(Symbol symbol) {
         if (symbol.getSymbolClass() != SymbolClass.FUNCTION) {
@@ -37,6 +36,10 @@ public class IRFunction {
 
     public void emit(IRInsn insn) {
         insn.setFunction(this);
+        insn.setIndex(instructions.size());
+        if (insn.isLabel() && labels.putIfAbsent(insn.getLabel(), insn) != null) {
+            throw new RuntimeException("label already emitted");
+        }
         instructions.add(insn);
     }
 
@@ -48,8 +51,11 @@ public class IRFunction {
         if (symbol.getSymbolClass() != SymbolClass.LABEL) {
             throw new RuntimeException("not a label symbol");
         }
-        return instructions.stream().filter(insn -> insn.isLabel() && insn.getLabel() == symbol)
-                .findAny().orElseThrow(() -> new RuntimeException("label not found"));
+        IRInsn insn = labels.get(symbol);
+        if (insn == null) {
+            throw new RuntimeException("label not found");
+        }
+        return insn;
     }
 
     public List<BasicBlock> getBasicBlocks() {
@@ -57,6 +63,8 @@ public class IRFunction {
     }
 
     public void addBasicBlock(BasicBlock block) {
+        block.setIndex(basicBlocks.size());
+        block.forEach(insn -> insn.setBlock(block));
         basicBlocks.add(block);
         leaderToBlock.put(block.getLeader(), block);
     }
@@ -84,15 +92,54 @@ public class IRFunction {
         return symbol.getFrameSize();
     }
 
+    // The header declares the parameters, and the locals every other variable of the frame in frame order, so that
+    // IRParser can read the function back with the same layout. A variable is written under its own name unless
+    // another variable of its function has the same name, or it would hide a global that the function uses; then
+    // the name is qualified with '#' and its id, counted after the ids of the globals so that the two never clash.
     @Override
     public String toString() {
-        String params = Arrays.stream(((FunctionType) symbol.getType()).getArgs())
-                .map(Type::toString).collect(Collectors.joining(", "));
+        Map<Symbol, Map<String, Long>> counts = new HashMap<>();
+        Map<Symbol, String> names = new HashMap<>();
+        Set<String> globals = new HashSet<>();
+        int offset = 0;
+        for (IRInsn insn : instructions) {
+            if (!insn.isLabel()) {
+                for (Symbol operand : insn.getOperands()) {
+                    if (operand.getSymbolClass() == SymbolClass.VAR && operand.getFunction() != symbol) {
+                        names.computeIfAbsent(operand, global -> name(global, 0, Set.of(), counts));
+                        globals.add(operand.getName());
+                        offset = Math.max(offset, operand.getFunction().getLocalCount());
+                    }
+                }
+            }
+        }
+        for (Symbol local : symbol.getLocals()) {
+            names.put(local, name(local, offset, globals, counts));
+        }
+        Function<Symbol, String> nameOf = s -> names.getOrDefault(s, s.getName());
+
+        String params = symbol.getParameters().stream()
+                .map(param -> param.getType() + " " + nameOf.apply(param)).collect(Collectors.joining(", "));
+        String declarations = symbol.getLocals().stream().filter(local -> !local.isArgument())
+                .sorted(Comparator.comparingInt(Symbol::getFrameIndex))
+                .map(local -> nameOf.apply(local) + ": " + local.getType()).collect(Collectors.joining(", "));
 
         return "# start_function " + symbol.getName() + "\n" +
                 symbol.getType().toString() + " " + symbol.getName() + "(" + params + "):\n" +
-                instructions.stream().map(insn -> insn.isLabel() ? insn.toString() : "  " + insn.toString())
+                "locals:" + (declarations.isEmpty() ? "" : " " + declarations) + "\n" +
+                instructions.stream().map(insn -> insn.isLabel() ? insn.toString(nameOf) : "  " + insn.toString(nameOf))
                         .collect(Collectors.joining("\n")) +
                 "\n# end_function " + symbol.getName();
     }
+
+    private static String name(Symbol variable, int offset, Set<String> hidden,
+                               Map<Symbol, Map<String, Long>> counts) {
+        String name = variable.getName();
+        Map<String, Long> count = counts.computeIfAbsent(variable.getFunction(), function -> function.getLocals()
+                .stream().collect(Collectors.groupingBy(Symbol::getName, Collectors.counting())));
+        if (count.getOrDefault(name, 0L) > 1 || hidden.contains(name)) {
+            return name + "#" + (offset + variable.getId());
+        }
+        return name;
+    }
 }
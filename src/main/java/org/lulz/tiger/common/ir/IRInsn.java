@@ -7,6 +7,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.lulz.tiger.common.ir.Opcode.GOTO;
@@ -17,6 +19,8 @@ public class IRInsn {
     private Symbol[] operands;
     private Symbol label;
     private IRFunction function;
+    private BasicBlock block;
+    private int index;  // position in the function's instruction list
     private boolean isLabel;
     private boolean isLeader;
     private Set<Symbol> inSet;
@@ -64,6 +68,22 @@ public class IRInsn {
         this.function = function;
     }
 
+    public BasicBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(BasicBlock block) {
+        this.block = block;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
     public boolean isFallThrough() {
         return opcode != GOTO && opcode != RETURN;
     }
@@ -109,14 +129,20 @@ public class IRInsn {
     }
 
     public Set<Symbol> getUses() {
+        Set<Symbol> uses = new HashSet<>();
+        forEachUse(uses::add);
+        return uses;
+    }
+
+    // visits the same symbols as getUses() without building a set; a symbol may be visited twice
+    public void forEachUse(Consumer<Symbol> action) {
         if (isLabel) {
-            return Collections.emptySet();
+            return;
         }
-        Set<Symbol> uses = new HashSet<>();
         switch (getOpcode()) {
             case ASSIGN:
             case ARRINIT:    // IR generator will never emit an ARINIT with register uses, but put this here anyway
-                uses.add(operands[1]);
+                use(operands[1], action);
                 break;
             case ADD:
             case SUB:
@@ -124,12 +150,12 @@ public class IRInsn {
             case DIV:
             case AND:
             case OR:
-                uses.add(operands[1]);
-                uses.add(operands[2]);
+                use(operands[1], action);
+                use(operands[2], action);
                 break;
             case STORE:
-                uses.add(operands[0]);  // debugged this for 2 hours: operands[1] -> operands[0]
-                uses.add(operands[2]);
+                use(operands[0], action);  // debugged this for 2 hours: operands[1] -> operands[0]
+                use(operands[2], action);
                 break;
             case BEQ:
             case BNE:
@@ -137,29 +163,45 @@ public class IRInsn {
             case BGT:
             case BGE:
             case BLE:
-                uses.add(operands[0]);
-                uses.add(operands[1]);
+                use(operands[0], action);
+                use(operands[1], action);
                 break;
             case RETURN:
-                uses.add(operands[0]);
+                use(operands[0], action);
                 break;
             case CALL:
-                uses.addAll(Arrays.stream(operands).skip(2).collect(Collectors.toList()));
+                for (int i = 2; i < operands.length; i++) {
+                    use(operands[i], action);
+                }
                 if (operands[1].getIrFunction() != null) {
-                    Set<Symbol> funcUses = new HashSet<>(operands[1].getIrFunction().getBasicBlocks().get(0).getInSet());
-                    funcUses.removeIf(Symbol::isArgument);
-                    uses.addAll(funcUses);
+                    for (Symbol symbol : operands[1].getIrFunction().getBasicBlocks().get(0).getInSet()) {
+                        if (!symbol.isArgument()) {
+                            use(symbol, action);
+                        }
+                    }
                 }
                 break;
             case LOAD:
-                uses.add(operands[2]);
+                use(operands[2], action);
                 break;
         }
-        uses.removeIf(Symbol::isConstant);
-        return uses;
     }
 
+    private static void use(Symbol symbol, Consumer<Symbol> action) {
+        if (!symbol.isConstant()) {
+            action.accept(symbol);
+        }
+    }
+
+    // when the block only stores boundary sets, this recomputes the block's sets; see BasicBlock.getInstructionSets
     public Set<Symbol> getInSet() {
+        if (inSet == null && block != null && block.getInSet() != null) {
+            return block.getInstructionSets().get(index - block.getLeader().getIndex());
+        }
+        return inSet;
+    }
+
+    Set<Symbol> getStoredInSet() {
         return inSet;
     }
 
@@ -168,6 +210,9 @@ public class IRInsn {
     }
 
     public Set<Symbol> getOutSet() {
+        if (outSet == null && block != null && block.getOutSet() != null) {
+            return block.getInstructionSets().get(index - block.getLeader().getIndex() + 1);
+        }
         return outSet;
     }
 
@@ -177,8 +222,13 @@ public class IRInsn {
 
     @Override
     public String toString() {
+        return toString(Symbol::getName);
+    }
+
+    // variables, labels and functions are written as names gives them
+    String toString(Function<Symbol, String> names) {
         if (isLabel) {
-            return label.getName() + ":";
+            return names.apply(label) + ":";
         } else {
             return opcode.name().toLowerCase() + " " + Arrays.stream(operands).map(symbol -> {
                 if (symbol.getSymbolClass() == SymbolClass.ICONST)
@@ -186,7 +236,7 @@ public class IRInsn {
                 else if (symbol.getSymbolClass() == SymbolClass.FCONST)
                     return String.valueOf(symbol.getFloatVal());
                 else
-                    return symbol.getName();
+                    return names.apply(symbol);
             }).collect(Collectors.joining(", "));
         }
     }
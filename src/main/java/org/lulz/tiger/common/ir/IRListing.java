@@ -1,5 +1,7 @@
 package org.lulz.tiger.common.ir;
 
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultEdge;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.symbol.SymbolClass;
 
@@ -9,6 +11,7 @@ import java.util.stream.Collectors;
 public class IRListing {
     private List<IRFunction> functions = new ArrayList<>();
     private Deque<IRFunction> stack = new ArrayDeque<>();
+    private Graph<IRFunction, DefaultEdge> callGraph;
 
     public void pushFunction(Symbol symbol) {
         IRFunction func = new IRFunction(symbol);
@@ -21,6 +24,11 @@ public class IRListing {
         stack.pop();
     }
 
+    // adds the functions of another listing after this one's
+    public void append(IRListing other) {
+        functions.addAll(other.functions);
+    }
+
     public void emit(Opcode op, Symbol... operands) {
         if (Arrays.stream(operands).anyMatch(Objects::isNull)) {
             throw new RuntimeException("null operand");
@@ -39,6 +47,14 @@ public class IRListing {
         return functions;
     }
 
+    public Graph<IRFunction, DefaultEdge> getCallGraph() {
+        return callGraph;
+    }
+
+    public void setCallGraph(Graph<IRFunction, DefaultEdge> callGraph) {
+        this.callGraph = callGraph;
+    }
+
     @Override
     public String toString() {
         return functions.stream().map(IRFunction::toString).collect(Collectors.joining("\n\n"));
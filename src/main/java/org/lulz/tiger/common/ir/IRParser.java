@@ -0,0 +1,390 @@
+package org.lulz.tiger.common.ir;
+
+import org.lulz.tiger.common.symbol.Symbol;
+import org.lulz.tiger.common.symbol.SymbolClass;
+import org.lulz.tiger.common.symbol.SymbolTable;
+import org.lulz.tiger.common.type.FunctionType;
+import org.lulz.tiger.common.type.Type;
+import org.lulz.tiger.common.type.TypeKind;
+import org.lulz.tiger.common.type.TypeManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.lulz.tiger.common.ir.Opcode.*;
+
+// Reads a listing in the format of IRListing.toString(). Parameters and locals are added to a new symbol table in the
+// order they are declared, so they get the frame layout the front end gave them. A name is resolved among the
+// variables of its function first, then among those of main, which are the globals. A name qualified with '#' stands
+// for a variable that shares its name with another; the variable is declared under the plain name in a scope of its own.
+// Lines starting with '#' other than function delimiters are comments.
+public class IRParser {
+    static final int MAX_PARAMETERS = 4;     // passed in $a0-$a3
+
+    private static final Pattern HEADER = Pattern.compile("(\\S+) (\\w+)\\((.*)\\):");
+    private static final Pattern DECLARATION = Pattern.compile("(\\w+(?:#\\d+)?): (\\S+)");
+    private static final Pattern NAME = Pattern.compile("\\w+(?:#\\d+)?");
+
+    private TypeManager typeManager = new TypeManager();
+    private SymbolTable symbols = new SymbolTable();
+    private List<String> lines;
+    private Map<String, Symbol> globals;
+
+    private IRParser(String text) {
+        lines = text.lines().collect(Collectors.toList());
+    }
+
+    public static IRListing parse(String text) {
+        return new IRParser(text).parse();
+    }
+
+    private IRListing parse() {
+        List<Block> blocks = split();
+        if (blocks.stream().noneMatch(block -> block.name.equals("main"))) {
+            throw new IRSyntaxException(1, "no main function");
+        }
+
+        // declare every function and variable before reading instructions, which may refer to any of them
+        symbols.pushNewScope("globals");
+        symbols.addFunction("printi", new FunctionType(new Type[]{typeManager.getIntPrimitiveType()}, typeManager.getIntPrimitiveType()));
+        symbols.addFunction("printf", new FunctionType(new Type[]{typeManager.getFloatPrimitiveType()}, typeManager.getIntPrimitiveType()));
+        symbols.addFunction("flush", new FunctionType(new Type[0], typeManager.getIntPrimitiveType()));
+        for (Block block : blocks) {
+            header(block);
+        }
+        for (Block block : blocks) {
+            if (block.name.equals("main")) {
+                declare(block);
+                globals = block.variables;
+            }
+        }
+        for (Block block : blocks) {
+            if (!block.name.equals("main")) {
+                block.scopeId = symbols.pushNewScope(block.name);
+                declare(block);
+                symbols.popScope();
+            }
+        }
+
+        IRListing listing = new IRListing();
+        for (Block block : blocks) {
+            if (block.scopeId >= 0) {
+                symbols.pushScope(block.scopeId);
+            }
+            symbols.pushFunction(block.symbol);
+            listing.pushFunction(block.symbol);
+            instructions(block, listing);
+            listing.popFunction();
+            symbols.popFunction();
+            if (block.scopeId >= 0) {
+                symbols.popScope();
+            }
+        }
+        return listing;
+    }
+
+    // the lines of each function, from its header to its last instruction
+    private List<Block> split() {
+        List<Block> blocks = new ArrayList<>();
+        Block block = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.startsWith("# start_function ")) {
+                if (block != null) {
+                    throw new IRSyntaxException(i + 1, "missing end of function " + block.name);
+                }
+                block = new Block(line.substring("# start_function ".length()).strip(), i + 1);
+            } else if (line.startsWith("# end_function")) {
+                if (block == null) {
+                    throw new IRSyntaxException(i + 1, "end of function outside of function");
+                }
+                block.end = i;
+                blocks.add(block);
+                block = null;
+            } else if (!line.isEmpty() && !line.startsWith("#") && block == null) {
+                throw new IRSyntaxException(i + 1, "instruction outside of function");
+            }
+        }
+        if (block != null) {
+            throw new IRSyntaxException(lines.size(), "missing end of function " + block.name);
+        }
+        return blocks;
+    }
+
+    private void header(Block block) {
+        Matcher matcher = HEADER.matcher(line(block.start));
+        if (!matcher.matches() || !matcher.group(2).equals(block.name)) {
+            throw new IRSyntaxException(block.start + 1, "expected header of function " + block.name);
+        }
+        if (!matcher.group(3).isEmpty()) {
+            for (String param : matcher.group(3).split(", ")) {
+                int space = param.lastIndexOf(' ');
+                if (space < 0) {
+                    throw new IRSyntaxException(block.start + 1, "expected parameter type and name");
+                }
+                if (!NAME.matcher(param.substring(space + 1)).matches()) {
+                    throw new IRSyntaxException(block.start + 1, "invalid parameter name " + param.substring(space + 1));
+                }
+                block.paramNames.add(param.substring(space + 1));
+                block.paramTypes.add(type(param.substring(0, space), block.start));
+            }
+        }
+        if (block.paramNames.size() > MAX_PARAMETERS) {
+            throw new IRSyntaxException(block.start + 1, "function has more than four parameters");
+        }
+        Type retVal = type(matcher.group(1), block.start);
+        block.symbol = declare(block.start, () -> symbols.addFunction(block.name,
+                new FunctionType(block.paramTypes.toArray(new Type[0]), retVal)));
+    }
+
+    private void declare(Block block) {
+        int index = block.start + 1;
+        String line = line(index);
+        if (!line.startsWith("locals:")) {
+            throw new IRSyntaxException(index + 1, "expected locals of function " + block.name);
+        }
+        symbols.pushFunction(block.symbol);
+        for (int i = 0; i < block.paramNames.size(); i++) {
+            String name = block.paramNames.get(i);
+            Type type = block.paramTypes.get(i);
+            variable(block, name, block.start, () -> symbols.addParameter(plain(name), type));
+        }
+        String locals = line.substring("locals:".length()).strip();
+        if (!locals.isEmpty()) {
+            for (String local : locals.split(", ")) {
+                Matcher matcher = DECLARATION.matcher(local);
+                if (!matcher.matches()) {
+                    throw new IRSyntaxException(index + 1, "expected name and type of local: " + local);
+                }
+                Type type = type(matcher.group(2), index);
+                variable(block, matcher.group(1), index, () -> symbols.addVariable(plain(matcher.group(1)), type));
+            }
+        }
+        symbols.popFunction();
+    }
+
+    private void variable(Block block, String name, int index, Supplier<Symbol> declaration) {
+        boolean qualified = name.indexOf('#') >= 0;
+        if (qualified) {
+            symbols.pushNewScope();
+        }
+        Symbol symbol = declare(index, declaration);
+        if (qualified) {
+            symbols.popScope();
+        }
+        if (block.variables.put(name, symbol) != null) {
+            throw new IRSyntaxException(index + 1, "symbol already defined in scope");
+        }
+    }
+
+    private static String plain(String name) {
+        int hash = name.indexOf('#');
+        return hash < 0 ? name : name.substring(0, hash);
+    }
+
+    private Symbol declare(int index, Supplier<Symbol> declaration) {
+        try {
+            return declaration.get();
+        } catch (RuntimeException e) {
+            throw new IRSyntaxException(index + 1, e.getMessage());
+        }
+    }
+
+    private Type type(String text, int index) {
+        switch (text) {
+            case "int":
+                return typeManager.getIntPrimitiveType();
+            case "float":
+                return typeManager.getFloatPrimitiveType();
+        }
+        int bracket = text.indexOf('[');
+        if (bracket > 0 && text.endsWith("]")) {
+            try {
+                int size = Integer.parseInt(text.substring(bracket + 1, text.length() - 1));
+                return typeManager.createArrayType(type(text.substring(0, bracket), index), size);
+            } catch (RuntimeException ignored) {
+            }
+        }
+        throw new IRSyntaxException(index + 1, "unknown type " + text);
+    }
+
+    private void instructions(Block block, IRListing listing) {
+        Map<String, Symbol> labels = new HashMap<>();
+        Set<Symbol> emitted = new HashSet<>();
+        Map<Symbol, Integer> undefined = new HashMap<>();   // labels branched to but not yet emitted, by line
+        for (int index = block.start + 2; index < block.end; index++) {
+            String line = line(index);
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.endsWith(":") && line.indexOf(' ') < 0) {
+                Symbol label = label(line.substring(0, line.length() - 1), labels);
+                if (!emitted.add(label)) {
+                    throw new IRSyntaxException(index + 1, "label already emitted");
+                }
+                undefined.remove(label);
+                listing.emit(label);
+                continue;
+            }
+
+            int space = line.indexOf(' ');
+            Opcode opcode;
+            try {
+                opcode = Opcode.valueOf((space < 0 ? line : line.substring(0, space)).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IRSyntaxException(index + 1, "unknown opcode");
+            }
+            String[] texts = space < 0 ? new String[0] : line.substring(space + 1).split(", ");
+            if (!hasOperandCount(opcode, texts.length)) {
+                throw new IRSyntaxException(index + 1, "wrong number of operands for " + opcode.name().toLowerCase());
+            }
+            Symbol[] operands = new Symbol[texts.length];
+            for (int i = 0; i < texts.length; i++) {
+                SymbolClass symbolClass = operandClass(opcode, i);
+                if (symbolClass == SymbolClass.LABEL) {
+                    operands[i] = label(texts[i], labels);
+                    if (!emitted.contains(operands[i])) {
+                        undefined.putIfAbsent(operands[i], index);
+                    }
+                } else if (symbolClass == SymbolClass.FUNCTION) {
+                    operands[i] = symbol(texts[i], SymbolClass.FUNCTION, index);
+                } else {
+                    operands[i] = operand(texts[i], block, index);
+                }
+            }
+            String error = checkOperands(opcode, operands);
+            if (error != null) {
+                throw new IRSyntaxException(index + 1, error);
+            }
+            listing.emit(opcode, operands);
+        }
+        if (!undefined.isEmpty()) {
+            Map.Entry<Symbol, Integer> first = undefined.entrySet().stream()
+                    .min(Map.Entry.comparingByValue()).orElseThrow();
+            throw new IRSyntaxException(first.getValue() + 1, "undefined label " + first.getKey().getName());
+        }
+    }
+
+    // why the operands do not fit the opcode, or null if they do; IRBinary checks its instructions the same way
+    static String checkOperands(Opcode opcode, Symbol[] operands) {
+        String name = opcode.name().toLowerCase();
+        if (!hasOperandCount(opcode, operands.length)) {
+            return "wrong number of operands for " + name;
+        }
+        for (int i = 0; i < operands.length; i++) {
+            SymbolClass expected = operandClass(opcode, i);
+            SymbolClass actual = operands[i].getSymbolClass();
+            if (expected != null ? actual != expected : actual != SymbolClass.VAR && !operands[i].isConstant()) {
+                return "operand " + (i + 1) + " of " + name + " must be a "
+                        + (expected == SymbolClass.LABEL ? "label" : expected == SymbolClass.FUNCTION ? "function"
+                        : expected == SymbolClass.VAR ? "variable" : "variable or constant");
+            }
+        }
+        for (int i = 0; i < operands.length; i++) {
+            if (isArrayOperand(opcode, i) && operands[i].getType().getKind() != TypeKind.ARRAY) {
+                return "operand " + (i + 1) + " of " + name + " must be an array";
+            }
+        }
+        if (opcode == CALL && (operands[1].getType().getKind() != TypeKind.FUNCTION
+                || ((FunctionType) operands[1].getType()).getArgs().length != operands.length - 2)) {
+            return "wrong number of arguments for " + operands[1].getName();
+        }
+        return null;
+    }
+
+    // the class operand i of the opcode must have, or null where any variable or constant is read
+    static SymbolClass operandClass(Opcode opcode, int i) {
+        if ((opcode == GOTO && i == 0) || (isBranch(opcode) && i == 2)) {
+            return SymbolClass.LABEL;
+        } else if (opcode == CALL && i == 1) {
+            return SymbolClass.FUNCTION;
+        }
+        boolean target = i == 0 && opcode != GOTO && opcode != RETURN && opcode != STORE && !isBranch(opcode);
+        return target || isArrayOperand(opcode, i) ? SymbolClass.VAR : null;
+    }
+
+    private static boolean isArrayOperand(Opcode opcode, int i) {
+        return (i == 1 && (opcode == LOAD || opcode == STORE)) || (i == 0 && opcode == ARRINIT);
+    }
+
+    static boolean hasOperandCount(Opcode opcode, int count) {
+        switch (opcode) {
+            case GOTO:
+            case RETURN:
+                return count == 1;
+            case ASSIGN:
+            case ARRINIT:
+                return count == 2;
+            case CALL:
+                return count >= 2;
+            default:
+                return count == 3;
+        }
+    }
+
+    private static boolean isBranch(Opcode opcode) {
+        return opcode == BEQ || opcode == BNE || opcode == BLT || opcode == BGT || opcode == BGE || opcode == BLE;
+    }
+
+    // labels are local to their function
+    private static Symbol label(String name, Map<String, Symbol> labels) {
+        return labels.computeIfAbsent(name, n -> new Symbol(n, SymbolClass.LABEL, null));
+    }
+
+    private Symbol operand(String text, Block block, int index) {
+        char first = text.isEmpty() ? ' ' : text.charAt(0);
+        if (Character.isDigit(first) || first == '-' || text.equals("NaN") || text.equals("Infinity")) {
+            try {
+                return symbols.addConst(typeManager.getIntPrimitiveType(), Integer.parseInt(text));
+            } catch (NumberFormatException e) {
+                try {
+                    return symbols.addConst(typeManager.getFloatPrimitiveType(), Float.parseFloat(text));
+                } catch (NumberFormatException e2) {
+                    throw new IRSyntaxException(index + 1, "invalid constant " + text);
+                }
+            }
+        }
+        Symbol variable = block.variables.getOrDefault(text, globals.get(text));
+        if (variable == null) {
+            throw new IRSyntaxException(index + 1, "undeclared " + SymbolClass.VAR + " " + text);
+        }
+        return variable;
+    }
+
+    private Symbol symbol(String name, SymbolClass symbolClass, int index) {
+        Symbol symbol = symbols.getSymbol(name);
+        if (symbol == null || symbol.getSymbolClass() != symbolClass) {
+            throw new IRSyntaxException(index + 1, "undeclared " + symbolClass + " " + name);
+        }
+        return symbol;
+    }
+
+    private String line(int index) {
+        return index < lines.size() ? lines.get(index).strip() : "";
+    }
+
+    // the lines of a function: start is the header, and end the line after the last instruction
+    private static class Block {
+        String name;
+        int start;
+        int end;
+        int scopeId = -1;
+        Symbol symbol;
+        List<String> paramNames = new ArrayList<>();
+        List<Type> paramTypes = new ArrayList<>();
+        Map<String, Symbol> variables = new HashMap<>();   // by the name the listing gives them
+
+        Block(String name, int start) {
+            this.name = name;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.lulz.tiger.common.ir;
+
+public class IRSyntaxException extends RuntimeException {
+    private int line;
+
+    public IRSyntaxException(int line, String message) {
+        super(message);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,26 @@
+package org.lulz.tiger.common.symbol;
+
+// a name's declaration as the slot of a scope, and the binding of the same name it shadows
+class Binding {
+    private int scopeId;
+    private int slot;
+    private Binding shadowed;
+
+    Binding(int scopeId, int slot, Binding shadowed) {
+        this.scopeId = scopeId;
+        this.slot = slot;
+        this.shadowed = shadowed;
+    }
+
+    int getScopeId() {
+        return scopeId;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    Binding getShadowed() {
+        return shadowed;
+    }
+}
@@ -1,15 +1,18 @@
 package org.lulz.tiger.common.symbol;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
+// A scope's symbols in slots, in order of declaration. Names are resolved by SymbolTable, which binds the named slots
+// of every open scope; temporaries and labels are kept in slots but never bound.
 public class Scope {
     private int scopeId;
     private String name;
     private Scope parent;
     private int depth;
-    private Map<String, Symbol> map = new HashMap<>();
+    private List<Symbol> slots = new ArrayList<>();
+    private List<Integer> namedSlots = new ArrayList<>();
 
     Scope(int scopeId, String name, Scope parent, int depth) {
         this.scopeId = scopeId;
@@ -30,25 +33,28 @@ public class Scope {
         return parent;
     }
 
-    void put(String name, Symbol symbol) {
-        if (map.containsKey(name)) {
-            throw new RuntimeException("symbol already defined in scope");
+    // returns the symbol's slot
+    int add(Symbol symbol, boolean named) {
+        int slot = slots.size();
+        slots.add(symbol);
+        if (named) {
+            namedSlots.add(slot);
         }
-        map.put(name, symbol);
+        return slot;
     }
 
-    Symbol get(String name) {
-        return map.get(name);
+    Symbol getSlot(int slot) {
+        return slots.get(slot);
     }
 
-    boolean contains(String name) {
-        return map.containsKey(name);
+    List<Integer> getNamedSlots() {
+        return namedSlots;
     }
 
     @Override
     public String toString() {
         return " ".repeat(depth * 2) + "scope " + scopeId + ":\n"
-                + map.values().stream()
+                + slots.stream()
                 .map(symbol -> symbol.toString() + ", " + symbol.getSymbolClass() + ", " + symbol.getType())
                 .map(s -> " ".repeat(depth * 2 + 2) + s)
                 .collect(Collectors.joining("\n"));
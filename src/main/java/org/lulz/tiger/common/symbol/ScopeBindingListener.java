@@ -4,16 +4,19 @@ import org.lulz.tiger.antlr.TigerParser;
 import org.lulz.tiger.antlr.TigerParserBaseListener;
 import org.lulz.tiger.common.Decoration;
 
-public abstract class ScopeBindingListener extends TigerParserBaseListener {
+// re-enters the scopes created by symbol collection as the parse tree is walked again
+public class ScopeBindingListener extends TigerParserBaseListener {
     private SymbolTable symbols;
+    protected Decoration decoration;
 
-    public ScopeBindingListener(SymbolTable symbols) {
+    public ScopeBindingListener(SymbolTable symbols, Decoration decoration) {
         this.symbols = symbols;
+        this.decoration = decoration;
     }
 
     @Override
     public void enterTigerProgram(TigerParser.TigerProgramContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
+        symbols.pushScope(decoration.getScopeId(ctx));
     }
 
     @Override
@@ -23,7 +26,7 @@ public abstract class ScopeBindingListener extends TigerParserBaseListener {
 
     @Override
     public void enterLetBlock(TigerParser.LetBlockContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
+        symbols.pushScope(decoration.getScopeId(ctx));
     }
 
     @Override
@@ -33,7 +36,7 @@ public abstract class ScopeBindingListener extends TigerParserBaseListener {
 
     @Override
     public void enterFunctionDeclaration(TigerParser.FunctionDeclarationContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
+        symbols.pushScope(decoration.getScopeId(ctx));
     }
 
     @Override
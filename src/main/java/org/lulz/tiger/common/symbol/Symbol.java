@@ -5,6 +5,9 @@ import org.lulz.tiger.common.type.ArrayType;
 import org.lulz.tiger.common.type.Type;
 import org.lulz.tiger.common.type.TypeKind;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Symbol {
     private String name;
     private SymbolClass symbolClass;
@@ -12,9 +15,13 @@ public class Symbol {
     private int intVal;
     private float floatVal;
     private boolean isArgument;
+    private int id;             // dense index among the variables and temporaries of the owning function
+    private int localCount;     // for functions, number of variables and temporaries owned
     private int frameIndex;
     private int frameSize;
     private Symbol function;
+    private List<Symbol> parameters;    // for functions, the argument variables in order
+    private List<Symbol> locals;        // for functions, the variables and temporaries owned, parameters included
     private IRFunction irFunction;
 
     public Symbol(String name, SymbolClass symbolClass, Type type) {
@@ -49,6 +56,22 @@ public class Symbol {
         isArgument = argument;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getLocalCount() {
+        return localCount;
+    }
+
+    public void setLocalCount(int localCount) {
+        this.localCount = localCount;
+    }
+
     public int getFrameIndex() {
         return frameIndex;
     }
@@ -80,6 +103,28 @@ public class Symbol {
         this.function = function;
     }
 
+    public List<Symbol> getParameters() {
+        return parameters != null ? parameters : List.of();
+    }
+
+    public void addParameter(Symbol parameter) {
+        if (parameters == null) {
+            parameters = new ArrayList<>();
+        }
+        parameters.add(parameter);
+    }
+
+    public List<Symbol> getLocals() {
+        return locals != null ? locals : List.of();
+    }
+
+    public void addLocal(Symbol local) {
+        if (locals == null) {
+            locals = new ArrayList<>();
+        }
+        locals.add(local);
+    }
+
     public IRFunction getIrFunction() {
         return irFunction;
     }
@@ -104,6 +149,13 @@ public class Symbol {
         return symbolClass == SymbolClass.ICONST || symbolClass == SymbolClass.FCONST;
     }
 
+    // symbols are equal only to themselves, but hash by name so that iterating a set of symbols, and with it
+    // the generated code, is the same from run to run
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
     @Override
     public String toString() {
         return name;
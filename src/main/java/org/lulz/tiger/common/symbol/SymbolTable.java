@@ -5,17 +5,53 @@ import org.lulz.tiger.common.type.Type;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+// Scopes are kept by id for the passes after symbol collection to re-enter. Every name declared in an open scope is
+// bound in one flat map to its innermost declaration, so resolving a name is one lookup however deeply scopes nest.
+// A fork lets a pass over one function run concurrently with the rest; it shares the scopes and constants, and numbers
+// its temporaries and labels on its own.
 public class SymbolTable {
-    private List<Scope> scopes = new ArrayList<>();
+    private List<Scope> scopes;
     private Deque<Scope> stack = new ArrayDeque<>();
+    private Map<String, Binding> visible = new HashMap<>();
+    private Map<String, Binding> inherited = Map.of();     // bindings of the table this one was forked from
+    private Map<String, Binding> snapshot;                  // visible and inherited bindings, shared by forks
     private Deque<Symbol> functionStack = new ArrayDeque<>();
+    // constants are interned per compilation unit, outside of the scopes; floats are keyed by their bits
+    private Map<Integer, Symbol> intConstants;
+    private Map<Integer, Symbol> floatConstants;
     private int tempCounter = 0;
-    private int constCounter = 0;
     private int labelCounter = 0;
 
+    public SymbolTable() {
+        this(new ArrayList<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    private SymbolTable(List<Scope> scopes, Map<Integer, Symbol> intConstants, Map<Integer, Symbol> floatConstants) {
+        this.scopes = scopes;
+        this.intConstants = intConstants;
+        this.floatConstants = floatConstants;
+    }
+
+    // a table in the same open scopes and function as this one. New scopes may no longer be created in either, and
+    // only the fork may add to the scopes it enters.
+    public SymbolTable fork() {
+        if (snapshot == null) {
+            snapshot = new HashMap<>(inherited);
+            snapshot.putAll(visible);
+        }
+        SymbolTable fork = new SymbolTable(scopes, intConstants, floatConstants);
+        fork.stack = new ArrayDeque<>(stack);
+        fork.functionStack = new ArrayDeque<>(functionStack);
+        fork.inherited = snapshot;
+        return fork;
+    }
+
     public int pushNewScope() {
         return pushNewScope("<anonymous scope>");
     }
@@ -42,11 +78,25 @@ public class SymbolTable {
             throw new RuntimeException("scope pushed out of order");
         }
 
-        stack.push(scopes.get(scopeId));
+        stack.push(scope);
+        for (int slot : scope.getNamedSlots()) {
+            bind(scope, slot);
+        }
     }
 
     public void popScope() {
-        stack.pop();
+        Scope scope = stack.pop();
+        List<Integer> slots = scope.getNamedSlots();
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            String name = scope.getSlot(slots.get(i)).getName();
+            Binding shadowed = lookup(name).getShadowed();
+            if (shadowed != null) {
+                visible.put(name, shadowed);
+            } else {
+                visible.remove(name);
+            }
+        }
+        snapshot = null;
     }
 
     public void pushFunction(Symbol function) {
@@ -67,14 +117,25 @@ public class SymbolTable {
         }
 
         Symbol symbol = new Symbol(name, SymbolClass.VAR, type);
-        scope.put(name, symbol);
+        declare(scope, symbol);
 
         Symbol function = functionStack.element();
         int index = function.getFrameSize();
         symbol.setFrameIndex(index);
         symbol.setFunction(function);
         function.setFrameSize(index + symbol.getMemorySize());
+        symbol.setId(function.getLocalCount());
+        function.setLocalCount(symbol.getId() + 1);
+        function.addLocal(symbol);
+
+        return symbol;
+    }
 
+    // a variable of the current function that holds its next argument
+    public Symbol addParameter(String name, Type type) {
+        Symbol symbol = addVariable(name, type);
+        symbol.setArgument(true);
+        functionStack.element().addParameter(symbol);
         return symbol;
     }
 
@@ -84,7 +145,7 @@ public class SymbolTable {
             throw new RuntimeException("no active scope");
         }
 
-        scope.put(name, new Symbol(name, SymbolClass.TYPEDEF, type));
+        declare(scope, new Symbol(name, SymbolClass.TYPEDEF, type));
     }
 
     public Symbol addFunction(String name, Type type) {
@@ -94,7 +155,7 @@ public class SymbolTable {
         }
 
         Symbol symbol = new Symbol(name, SymbolClass.FUNCTION, type);
-        scope.put(name, symbol);
+        declare(scope, symbol);
         return symbol;
     }
 
@@ -107,41 +168,29 @@ public class SymbolTable {
         String name = "_t" + tempCounter;
         tempCounter++;
         Symbol symbol = new Symbol(name, SymbolClass.VAR, type);
-        scope.put(name, symbol);
+        scope.add(symbol, false);
 
         Symbol function = functionStack.element();
         int index = function.getFrameSize();
         symbol.setFrameIndex(index);
         symbol.setFunction(function);
         function.setFrameSize(index + symbol.getMemorySize());
+        symbol.setId(function.getLocalCount());
+        function.setLocalCount(symbol.getId() + 1);
+        function.addLocal(symbol);
 
         return symbol;
     }
 
+    // returns the canonical symbol for the value, so equal constants are the same object. Constants are named after
+    // their value, as forks intern them in no particular order.
     public Symbol addConst(Type type, int val) {
-        Scope scope = stack.peek();
-        if (scope == null) {
-            throw new RuntimeException("no active scope");
-        }
-
-        String name = "_c" + constCounter;
-        constCounter++;
-        Symbol symbol = new Symbol(name, type, val);
-        scope.put(name, symbol);
-        return symbol;
+        return intConstants.computeIfAbsent(val, v -> new Symbol("_c" + val, type, val));
     }
 
     public Symbol addConst(Type type, float val) {
-        Scope scope = stack.peek();
-        if (scope == null) {
-            throw new RuntimeException("no active scope");
-        }
-
-        String name = "_c" + constCounter;
-        constCounter++;
-        Symbol symbol = new Symbol(name, type, val);
-        scope.put(name, symbol);
-        return symbol;
+        return floatConstants.computeIfAbsent(Float.floatToIntBits(val),
+                bits -> new Symbol("_cf" + Integer.toHexString(bits), type, val));
     }
 
     public Symbol newLabel() {
@@ -150,10 +199,11 @@ public class SymbolTable {
             throw new RuntimeException("no active scope");
         }
 
-        String name = "_label" + labelCounter;
+        // labels are global in the assembly, so they are qualified by their function
+        String name = "_" + functionStack.element().getName() + "_label" + labelCounter;
         labelCounter++;
         Symbol symbol = new Symbol(name, SymbolClass.LABEL, null);
-        scope.put(name, symbol);
+        scope.add(symbol, false);
         return symbol;
     }
 
@@ -163,13 +213,8 @@ public class SymbolTable {
             throw new RuntimeException("no active scope");
         }
 
-        while (scope != null) {
-            if (scope.contains(name)) {
-                return scope.get(name);
-            }
-            scope = scope.getParent();
-        }
-        return null;
+        Binding binding = lookup(name);
+        return binding != null ? scopes.get(binding.getScopeId()).getSlot(binding.getSlot()) : null;
     }
 
     public boolean isDefinedInCurrentScope(String name) {
@@ -177,7 +222,27 @@ public class SymbolTable {
         if (scope == null) {
             throw new RuntimeException("no active scope");
         }
-        return scope.contains(name);
+        Binding binding = lookup(name);
+        return binding != null && binding.getScopeId() == scope.getScopeId();
+    }
+
+    private void declare(Scope scope, Symbol symbol) {
+        Binding binding = lookup(symbol.getName());
+        if (binding != null && binding.getScopeId() == scope.getScopeId()) {
+            throw new RuntimeException("symbol already defined in scope");
+        }
+        bind(scope, scope.add(symbol, true));
+    }
+
+    private void bind(Scope scope, int slot) {
+        String name = scope.getSlot(slot).getName();
+        visible.put(name, new Binding(scope.getScopeId(), slot, lookup(name)));
+        snapshot = null;
+    }
+
+    private Binding lookup(String name) {
+        Binding binding = visible.get(name);
+        return binding != null ? binding : inherited.get(name);
     }
 
     @Override
@@ -0,0 +1,129 @@
+package org.lulz.tiger.frontend;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// An ASCII source file read through a memory mapping, so the lexer works on the page cache instead of a decoded copy.
+// Token text is only decoded when asked for. open() returns null for files with other characters, which have to be
+// decoded up front.
+public class MappedCharStream implements CharStream {
+    private ByteBuffer buffer;
+    private int size;
+    private int position;
+    private String sourceName;
+
+    private MappedCharStream(ByteBuffer buffer, String sourceName) {
+        this.buffer = buffer;
+        this.size = buffer.limit();
+        this.sourceName = sourceName;
+    }
+
+    public static MappedCharStream open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("source file larger than 2 GB: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) {
+                return null;
+            }
+        }
+        return new MappedCharStream(buffer, file.toString());
+    }
+
+    // the text of a 1-based line without its terminator, or null past the end
+    public String getLine(int line) {
+        int start = 0;
+        for (int i = 1; i < line; i++) {
+            while (start < size && buffer.get(start) != '\n') {
+                start++;
+            }
+            if (start == size) {
+                return null;
+            }
+            start++;
+        }
+        int end = start;
+        while (end < size && buffer.get(end) != '\n') {
+            end++;
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return decode(start, end);
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.max(interval.a, 0);
+        int end = Math.min(interval.b + 1, size);
+        return start < end ? decode(start, end) : "";
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i > 0) {
+            int index = position + i - 1;
+            return index < size ? buffer.get(index) : IntStream.EOF;
+        } else if (i < 0) {
+            int index = position + i;
+            return index >= 0 ? buffer.get(index) : IntStream.EOF;
+        }
+        return 0;
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+}
@@ -0,0 +1,28 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.symbol.Symbol;
+import org.lulz.tiger.common.type.Type;
+
+public class ArrayLoad extends Expr {
+    private Symbol array;
+    private Expr index;
+
+    public ArrayLoad(Symbol array, Expr index, Type type) {
+        super(type);
+        this.array = array;
+        this.index = index;
+    }
+
+    public Symbol getArray() {
+        return array;
+    }
+
+    public Expr getIndex() {
+        return index;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitArrayLoad(this);
+    }
+}
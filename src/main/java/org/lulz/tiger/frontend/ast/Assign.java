@@ -0,0 +1,33 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.symbol.Symbol;
+
+// assigns to a variable, or to an array element when index is not null
+public class Assign extends Stat {
+    private Symbol target;
+    private Expr index;
+    private Expr value;
+
+    public Assign(Symbol target, Expr index, Expr value) {
+        this.target = target;
+        this.index = index;
+        this.value = value;
+    }
+
+    public Symbol getTarget() {
+        return target;
+    }
+
+    public Expr getIndex() {
+        return index;
+    }
+
+    public Expr getValue() {
+        return value;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitAssign(this);
+    }
+}
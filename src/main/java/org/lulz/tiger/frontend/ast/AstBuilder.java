@@ -0,0 +1,164 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.antlr.TigerParserBaseVisitor;
+import org.lulz.tiger.common.Decoration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Lowers the decorated parse tree of a checked program to the AST, which keeps the symbols, types and scope ids
+// found by semantic analysis in its fields. Afterwards neither the parse tree nor the decoration is needed.
+// Parentheses and other syntax without meaning are dropped. Functions that were already built are taken as they are.
+public class AstBuilder extends TigerParserBaseVisitor<Stat> {
+    private Decoration decoration;
+    private Map<TigerParser.FunctionDeclarationContext, FunctionDecl> functions;
+
+    public AstBuilder(Decoration decoration, Map<TigerParser.FunctionDeclarationContext, FunctionDecl> functions) {
+        this.decoration = decoration;
+        this.functions = functions;
+    }
+
+    public FunctionDecl build(TigerParser.TigerProgramContext ctx) {
+        return new FunctionDecl(decoration.getSymbol(ctx), decoration.getScopeId(ctx),
+                declarations(ctx.declarationSegment()), statements(ctx.statSeq()));
+    }
+
+    public FunctionDecl build(TigerParser.FunctionDeclarationContext ctx) {
+        return new FunctionDecl(decoration.getSymbol(ctx), decoration.getScopeId(ctx),
+                new Declarations(List.of(), List.of()), statements(ctx.statSeq()));
+    }
+
+    private Declarations declarations(TigerParser.DeclarationSegmentContext ctx) {
+        List<VarInit> inits = new ArrayList<>();
+        for (TigerParser.VarDeclarationContext var : ctx.varDeclaration()) {
+            if (var.optionalInit() != null) {
+                for (TerminalNode id : var.idList().ID()) {
+                    inits.add(new VarInit(decoration.getSymbol(id),
+                            decoration.getSymbol(var.optionalInit().literal().getChild(0))));
+                }
+            }
+        }
+        List<FunctionDecl> functions = new ArrayList<>();
+        for (TigerParser.FunctionDeclarationContext function : ctx.functionDeclaration()) {
+            FunctionDecl built = this.functions.get(function);
+            functions.add(built != null ? built : build(function));
+        }
+        return new Declarations(inits, functions);
+    }
+
+    private List<Stat> statements(TigerParser.StatSeqContext ctx) {
+        List<Stat> stats = new ArrayList<>(ctx.getChildCount());
+        for (TigerParser.StatContext stat : ctx.stat()) {
+            stats.add(visit(stat));
+        }
+        return stats;
+    }
+
+    @Override
+    public Stat visitAssignment(TigerParser.AssignmentContext ctx) {
+        TigerParser.LvalueContext lvalue = ctx.lvalue();
+        Expr index = lvalue.LBRACK() != null ? expression(lvalue.expr()) : null;
+        return new Assign(decoration.getSymbol(lvalue.ID()), index, expression(ctx.expr()));
+    }
+
+    @Override
+    public Stat visitFncallAssignment(TigerParser.FncallAssignmentContext ctx) {
+        return new CallAssign(decoration.getSymbol(ctx.ID()), call(ctx.fncall()));
+    }
+
+    @Override
+    public Stat visitIfBlock(TigerParser.IfBlockContext ctx) {
+        List<Stat> elseBody = ctx.ELSE() != null ? statements(ctx.statSeq(1)) : null;
+        return new If(expression(ctx.expr()), statements(ctx.statSeq(0)), elseBody);
+    }
+
+    @Override
+    public Stat visitWhileBlock(TigerParser.WhileBlockContext ctx) {
+        return new While(expression(ctx.expr()), statements(ctx.statSeq()));
+    }
+
+    @Override
+    public Stat visitForBlock(TigerParser.ForBlockContext ctx) {
+        return new For(decoration.getSymbol(ctx.ID()), expression(ctx.expr(0)), expression(ctx.expr(1)),
+                statements(ctx.statSeq()));
+    }
+
+    @Override
+    public Stat visitLetBlock(TigerParser.LetBlockContext ctx) {
+        return new Let(decoration.getScopeId(ctx), declarations(ctx.declarationSegment()), statements(ctx.statSeq()));
+    }
+
+    @Override
+    public Stat visitBreak(TigerParser.BreakContext ctx) {
+        return new Break();
+    }
+
+    @Override
+    public Stat visitReturn(TigerParser.ReturnContext ctx) {
+        return new Return(expression(ctx.expr()));
+    }
+
+    private Expr expression(TigerParser.ExprContext ctx) {
+        if (ctx.atom() != null) {
+            TigerParser.AtomContext atom = ctx.atom();
+            if (atom.literal() != null) {
+                return new Operand(decoration.getSymbol(atom.literal().getChild(0)));
+            } else if (atom.lvalue() != null) {
+                TigerParser.LvalueContext lvalue = atom.lvalue();
+                if (lvalue.LBRACK() != null) {
+                    return new ArrayLoad(decoration.getSymbol(lvalue.ID()), expression(lvalue.expr()),
+                            decoration.getType(lvalue));
+                }
+                return new Operand(decoration.getSymbol(lvalue.ID()));
+            }
+            return expression(atom.expr());
+        }
+        return new Binary(operator(ctx.op.getType()), expression(ctx.expr(0)), expression(ctx.expr(1)),
+                decoration.getType(ctx));
+    }
+
+    private Call call(TigerParser.FncallContext ctx) {
+        List<Expr> args = new ArrayList<>();
+        if (ctx.expressionList() != null) {
+            for (TigerParser.ExprContext arg : ctx.expressionList().expr()) {
+                args.add(expression(arg));
+            }
+        }
+        return new Call(decoration.getSymbol(ctx.ID()), args, decoration.getType(ctx));
+    }
+
+    private Operator operator(int op) {
+        switch (op) {
+            case TigerParser.POW:
+                return Operator.POW;
+            case TigerParser.MULT:
+                return Operator.MULT;
+            case TigerParser.DIV:
+                return Operator.DIV;
+            case TigerParser.PLUS:
+                return Operator.PLUS;
+            case TigerParser.MINUS:
+                return Operator.MINUS;
+            case TigerParser.EQ:
+                return Operator.EQ;
+            case TigerParser.NEQ:
+                return Operator.NEQ;
+            case TigerParser.GREATER:
+                return Operator.GREATER;
+            case TigerParser.LESSER:
+                return Operator.LESSER;
+            case TigerParser.GREATEREQ:
+                return Operator.GREATEREQ;
+            case TigerParser.LESSEREQ:
+                return Operator.LESSEREQ;
+            case TigerParser.AND:
+                return Operator.AND;
+            case TigerParser.OR:
+                return Operator.OR;
+        }
+        throw new RuntimeException("unknown op");
+    }
+}
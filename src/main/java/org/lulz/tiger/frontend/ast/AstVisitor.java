@@ -0,0 +1,27 @@
+package org.lulz.tiger.frontend.ast;
+
+public interface AstVisitor<T> {
+    T visitAssign(Assign stat);
+
+    T visitCallAssign(CallAssign stat);
+
+    T visitIf(If stat);
+
+    T visitWhile(While stat);
+
+    T visitFor(For stat);
+
+    T visitLet(Let stat);
+
+    T visitBreak(Break stat);
+
+    T visitReturn(Return stat);
+
+    T visitOperand(Operand expr);
+
+    T visitArrayLoad(ArrayLoad expr);
+
+    T visitBinary(Binary expr);
+
+    T visitCall(Call expr);
+}
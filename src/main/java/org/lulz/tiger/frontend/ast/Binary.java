@@ -0,0 +1,33 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.type.Type;
+
+public class Binary extends Expr {
+    private Operator operator;
+    private Expr left;
+    private Expr right;
+
+    public Binary(Operator operator, Expr left, Expr right, Type type) {
+        super(type);
+        this.operator = operator;
+        this.left = left;
+        this.right = right;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Expr getLeft() {
+        return left;
+    }
+
+    public Expr getRight() {
+        return right;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitBinary(this);
+    }
+}
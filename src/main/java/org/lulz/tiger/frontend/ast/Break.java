@@ -0,0 +1,8 @@
+package org.lulz.tiger.frontend.ast;
+
+public class Break extends Stat {
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitBreak(this);
+    }
+}
@@ -0,0 +1,29 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+import org.lulz.tiger.common.symbol.Symbol;
+import org.lulz.tiger.common.type.Type;
+
+public class Call extends Expr {
+    private Symbol function;
+    private List<Expr> args;
+
+    public Call(Symbol function, List<Expr> args, Type type) {
+        super(type);
+        this.function = function;
+        this.args = args;
+    }
+
+    public Symbol getFunction() {
+        return function;
+    }
+
+    public List<Expr> getArgs() {
+        return args;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitCall(this);
+    }
+}
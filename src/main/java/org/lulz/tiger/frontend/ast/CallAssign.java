@@ -0,0 +1,26 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.symbol.Symbol;
+
+public class CallAssign extends Stat {
+    private Symbol target;
+    private Call call;
+
+    public CallAssign(Symbol target, Call call) {
+        this.target = target;
+        this.call = call;
+    }
+
+    public Symbol getTarget() {
+        return target;
+    }
+
+    public Call getCall() {
+        return call;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitCallAssign(this);
+    }
+}
@@ -0,0 +1,22 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+
+// the declarations of a scope that generate code; types need none and variables only their initializers
+public class Declarations {
+    private List<VarInit> inits;
+    private List<FunctionDecl> functions;
+
+    public Declarations(List<VarInit> inits, List<FunctionDecl> functions) {
+        this.inits = inits;
+        this.functions = functions;
+    }
+
+    public List<VarInit> getInits() {
+        return inits;
+    }
+
+    public List<FunctionDecl> getFunctions() {
+        return functions;
+    }
+}
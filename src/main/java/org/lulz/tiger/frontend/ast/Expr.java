@@ -0,0 +1,17 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.type.Type;
+
+public abstract class Expr {
+    private Type type;
+
+    protected Expr(Type type) {
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public abstract <T> T accept(AstVisitor<T> visitor);
+}
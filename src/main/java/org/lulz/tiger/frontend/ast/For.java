@@ -0,0 +1,39 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+import org.lulz.tiger.common.symbol.Symbol;
+
+public class For extends Stat {
+    private Symbol variable;
+    private Expr from;
+    private Expr to;
+    private List<Stat> body;
+
+    public For(Symbol variable, Expr from, Expr to, List<Stat> body) {
+        this.variable = variable;
+        this.from = from;
+        this.to = to;
+        this.body = body;
+    }
+
+    public Symbol getVariable() {
+        return variable;
+    }
+
+    public Expr getFrom() {
+        return from;
+    }
+
+    public Expr getTo() {
+        return to;
+    }
+
+    public List<Stat> getBody() {
+        return body;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitFor(this);
+    }
+}
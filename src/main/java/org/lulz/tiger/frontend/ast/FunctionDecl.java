@@ -0,0 +1,35 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+import org.lulz.tiger.common.symbol.Symbol;
+
+// a function and its scope; the program is the main function, whose declarations are the global ones
+public class FunctionDecl {
+    private Symbol symbol;
+    private int scopeId;
+    private Declarations declarations;
+    private List<Stat> body;
+
+    public FunctionDecl(Symbol symbol, int scopeId, Declarations declarations, List<Stat> body) {
+        this.symbol = symbol;
+        this.scopeId = scopeId;
+        this.declarations = declarations;
+        this.body = body;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    public int getScopeId() {
+        return scopeId;
+    }
+
+    public Declarations getDeclarations() {
+        return declarations;
+    }
+
+    public List<Stat> getBody() {
+        return body;
+    }
+}
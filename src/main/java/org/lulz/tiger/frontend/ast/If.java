@@ -0,0 +1,33 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+
+// elseBody is null without an else branch
+public class If extends Stat {
+    private Expr condition;
+    private List<Stat> thenBody;
+    private List<Stat> elseBody;
+
+    public If(Expr condition, List<Stat> thenBody, List<Stat> elseBody) {
+        this.condition = condition;
+        this.thenBody = thenBody;
+        this.elseBody = elseBody;
+    }
+
+    public Expr getCondition() {
+        return condition;
+    }
+
+    public List<Stat> getThenBody() {
+        return thenBody;
+    }
+
+    public List<Stat> getElseBody() {
+        return elseBody;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitIf(this);
+    }
+}
@@ -0,0 +1,32 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+
+public class Let extends Stat {
+    private int scopeId;
+    private Declarations declarations;
+    private List<Stat> body;
+
+    public Let(int scopeId, Declarations declarations, List<Stat> body) {
+        this.scopeId = scopeId;
+        this.declarations = declarations;
+        this.body = body;
+    }
+
+    public int getScopeId() {
+        return scopeId;
+    }
+
+    public Declarations getDeclarations() {
+        return declarations;
+    }
+
+    public List<Stat> getBody() {
+        return body;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitLet(this);
+    }
+}
@@ -0,0 +1,22 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.symbol.Symbol;
+
+// a variable or constant used as a value
+public class Operand extends Expr {
+    private Symbol symbol;
+
+    public Operand(Symbol symbol) {
+        super(symbol.getType());
+        this.symbol = symbol;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitOperand(this);
+    }
+}
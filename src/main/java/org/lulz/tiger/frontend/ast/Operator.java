@@ -0,0 +1,10 @@
+package org.lulz.tiger.frontend.ast;
+
+public enum Operator {
+    POW, MULT, DIV, PLUS, MINUS, EQ, NEQ, GREATER, LESSER, GREATEREQ, LESSEREQ, AND, OR;
+
+    // comparisons evaluate to 0 or 1 and may be lowered to a branch
+    public boolean isComparison() {
+        return compareTo(EQ) >= 0 && compareTo(LESSEREQ) <= 0;
+    }
+}
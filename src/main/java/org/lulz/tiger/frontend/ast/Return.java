@@ -0,0 +1,18 @@
+package org.lulz.tiger.frontend.ast;
+
+public class Return extends Stat {
+    private Expr value;
+
+    public Return(Expr value) {
+        this.value = value;
+    }
+
+    public Expr getValue() {
+        return value;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitReturn(this);
+    }
+}
@@ -0,0 +1,5 @@
+package org.lulz.tiger.frontend.ast;
+
+public abstract class Stat {
+    public abstract <T> T accept(AstVisitor<T> visitor);
+}
@@ -0,0 +1,22 @@
+package org.lulz.tiger.frontend.ast;
+
+import org.lulz.tiger.common.symbol.Symbol;
+
+// a variable initialized to a constant, or every element of an array variable
+public class VarInit {
+    private Symbol variable;
+    private Symbol value;
+
+    public VarInit(Symbol variable, Symbol value) {
+        this.variable = variable;
+        this.value = value;
+    }
+
+    public Symbol getVariable() {
+        return variable;
+    }
+
+    public Symbol getValue() {
+        return value;
+    }
+}
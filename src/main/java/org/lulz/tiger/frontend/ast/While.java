@@ -0,0 +1,26 @@
+package org.lulz.tiger.frontend.ast;
+
+import java.util.List;
+
+public class While extends Stat {
+    private Expr condition;
+    private List<Stat> body;
+
+    public While(Expr condition, List<Stat> body) {
+        this.condition = condition;
+        this.body = body;
+    }
+
+    public Expr getCondition() {
+        return condition;
+    }
+
+    public List<Stat> getBody() {
+        return body;
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitWhile(this);
+    }
+}
@@ -1,29 +1,30 @@
 package org.lulz.tiger.frontend.irgen;
 
-import org.antlr.v4.runtime.tree.TerminalNode;
-import org.lulz.tiger.antlr.TigerParser;
-import org.lulz.tiger.antlr.TigerParserBaseVisitor;
-import org.lulz.tiger.common.Decoration;
+import org.lulz.tiger.common.Parallelism;
 import org.lulz.tiger.common.ir.IRListing;
 import org.lulz.tiger.common.ir.Opcode;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.symbol.SymbolTable;
 import org.lulz.tiger.common.type.TypeKind;
 import org.lulz.tiger.common.type.TypeManager;
+import org.lulz.tiger.frontend.ast.*;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 import static org.lulz.tiger.common.ir.Opcode.*;
 
-public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
+// Each function is lowered by a task of its own, on a fork of the symbol table, so its temporaries and labels are
+// numbered apart from the other functions. The listings are appended to the program's in declaration order.
+public class IRGenVisitor implements AstVisitor<Symbol> {
     private SymbolTable symbols;
     private TypeManager typeManager;
     private IRListing listing = new IRListing();
     private Deque<Symbol> breakTargets = new ArrayDeque<>();
+    private List<CompletableFuture<IRListing>> functions = new ArrayList<>();
 
     public IRGenVisitor(SymbolTable symbols, TypeManager typeManager) {
         this.symbols = symbols;
@@ -34,90 +35,95 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
         return listing;
     }
 
-    @Override
-    public Symbol visitTigerProgram(TigerParser.TigerProgramContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
-        symbols.pushFunction(Decoration.getSymbol(ctx));
-        listing.pushFunction(Decoration.getSymbol(ctx));
+    public void visitProgram(FunctionDecl program) {
+        symbols.pushScope(program.getScopeId());
+        symbols.pushFunction(program.getSymbol());
+        listing.pushFunction(program.getSymbol());
 
-        visitChildren(ctx);
+        visitDeclarations(program.getDeclarations());
+        visitStatements(program.getBody());
         listing.emit(RETURN, iconst(0));
 
         symbols.popScope();
         symbols.popFunction();
         listing.popFunction();
-        return null;
+
+        for (CompletableFuture<IRListing> function : functions) {
+            listing.append(Parallelism.join(function));
+        }
     }
 
-    @Override
-    public Symbol visitFunctionDeclaration(TigerParser.FunctionDeclarationContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
-        symbols.pushFunction(Decoration.getSymbol(ctx));
-        listing.pushFunction(Decoration.getSymbol(ctx));
-        visitChildren(ctx);
+    private void visitFunction(FunctionDecl function) {
+        symbols.pushScope(function.getScopeId());
+        symbols.pushFunction(function.getSymbol());
+        listing.pushFunction(function.getSymbol());
+        visitDeclarations(function.getDeclarations());
+        visitStatements(function.getBody());
         symbols.popScope();
         symbols.popFunction();
         listing.popFunction();
-        return null;
     }
 
-    @Override
-    public Symbol visitLetBlock(TigerParser.LetBlockContext ctx) {
-        symbols.pushScope(Decoration.getScopeId(ctx));
-        visitChildren(ctx);
-        symbols.popScope();
-        return null;
+    private void visitDeclarations(Declarations declarations) {
+        for (VarInit init : declarations.getInits()) {
+            if (init.getVariable().getType().getKind() == TypeKind.ARRAY) {
+                listing.emit(ARRINIT, init.getVariable(), init.getValue());
+            } else {
+                listing.emit(ASSIGN, init.getVariable(), init.getValue());
+            }
+        }
+        for (FunctionDecl function : declarations.getFunctions()) {
+            SymbolTable fork = symbols.fork();
+            functions.add(CompletableFuture.supplyAsync(() -> {
+                IRGenVisitor visitor = new IRGenVisitor(fork, typeManager);
+                visitor.visitFunction(function);
+                return visitor.getListing();
+            }, Parallelism.executor()));
+        }
     }
 
-    @Override
-    public Symbol visitAssignment(TigerParser.AssignmentContext ctx) {
-        Symbol rvalue = visitExpr(ctx.expr());
-        if (ctx.lvalue().LBRACK() != null) { // array
-            Symbol index = visitExpr(ctx.lvalue().expr());
-            Symbol array = visitTerminal(ctx.lvalue().ID());
-            listing.emit(STORE, rvalue, array, index);
-        } else { // scalar
-            listing.emit(ASSIGN, visitTerminal(ctx.lvalue().ID()), rvalue);
+    private void visitStatements(Iterable<Stat> stats) {
+        for (Stat stat : stats) {
+            stat.accept(this);
         }
-        return null;
     }
 
     @Override
-    public Symbol visitFncallAssignment(TigerParser.FncallAssignmentContext ctx) {
-        Symbol lvalue = visitTerminal(ctx.ID());
-        Symbol rvalue = visitFncall(ctx.fncall());
-        listing.emit(ASSIGN, lvalue, rvalue);
+    public Symbol visitLet(Let stat) {
+        symbols.pushScope(stat.getScopeId());
+        visitDeclarations(stat.getDeclarations());
+        visitStatements(stat.getBody());
+        symbols.popScope();
         return null;
     }
 
     @Override
-    public Symbol visitVarDeclaration(TigerParser.VarDeclarationContext ctx) {
-        if (ctx.optionalInit() != null) {
-            for (TerminalNode id : ctx.idList().ID()) {
-                Symbol lvalue = visitTerminal(id);
-                Symbol rvalue = visitLiteral(ctx.optionalInit().literal());
-                if (lvalue.getType().getKind() == TypeKind.ARRAY) {
-                    listing.emit(ARRINIT, lvalue, rvalue);
-                } else {
-                    listing.emit(ASSIGN, lvalue, rvalue);
-                }
-            }
+    public Symbol visitAssign(Assign stat) {
+        Symbol rvalue = stat.getValue().accept(this);
+        if (stat.getIndex() != null) { // array
+            Symbol index = stat.getIndex().accept(this);
+            listing.emit(STORE, rvalue, stat.getTarget(), index);
+        } else { // scalar
+            listing.emit(ASSIGN, stat.getTarget(), rvalue);
         }
         return null;
     }
 
     @Override
-    public Symbol visitExpr(TigerParser.ExprContext ctx) {
-        if (ctx.atom() != null) {
-            return visitChildren(ctx);
-        }
+    public Symbol visitCallAssign(CallAssign stat) {
+        Symbol rvalue = visitCall(stat.getCall());
+        listing.emit(ASSIGN, stat.getTarget(), rvalue);
+        return null;
+    }
 
-        Symbol o1 = visitExpr(ctx.expr(0));
-        Symbol o2 = visitExpr(ctx.expr(1));
-        Symbol result = symbols.newTemporary(Decoration.getType(ctx));
+    @Override
+    public Symbol visitBinary(Binary expr) {
+        Symbol o1 = expr.getLeft().accept(this);
+        Symbol o2 = expr.getRight().accept(this);
+        Symbol result = symbols.newTemporary(expr.getType());
 
-        switch (ctx.op.getType()) {
-            case TigerParser.POW: // desugar POW into multiplication loop
+        switch (expr.getOperator()) {
+            case POW: // desugar POW into multiplication loop
                 Symbol repeatLabel = symbols.newLabel();
                 Symbol counter = symbols.newTemporary(typeManager.getIntPrimitiveType());
 
@@ -129,24 +135,24 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
                 listing.emit(BLT, counter, o2, repeatLabel);
                 break;
 
-            case TigerParser.DIV:
-            case TigerParser.MULT:
-            case TigerParser.PLUS:
-            case TigerParser.MINUS:
-            case TigerParser.AND:
-            case TigerParser.OR:
-                listing.emit(getExprOpcode(ctx.op.getType()), result, o1, o2);
+            case DIV:
+            case MULT:
+            case PLUS:
+            case MINUS:
+            case AND:
+            case OR:
+                listing.emit(getExprOpcode(expr.getOperator()), result, o1, o2);
                 break;
 
-            case TigerParser.EQ:
-            case TigerParser.NEQ:
-            case TigerParser.GREATER:
-            case TigerParser.LESSER:
-            case TigerParser.GREATEREQ:
-            case TigerParser.LESSEREQ:
+            case EQ:
+            case NEQ:
+            case GREATER:
+            case LESSER:
+            case GREATEREQ:
+            case LESSEREQ:
                 Symbol trueLabel = symbols.newLabel();
                 Symbol endLabel = symbols.newLabel();
-                listing.emit(getExprOpcode(ctx.op.getType()), o1, o2, trueLabel);
+                listing.emit(getExprOpcode(expr.getOperator()), o1, o2, trueLabel);
                 listing.emit(ASSIGN, result, iconst(0));
                 listing.emit(GOTO, endLabel);
 
@@ -161,122 +167,113 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
     }
 
     @Override
-    public Symbol visitFncall(TigerParser.FncallContext ctx) {
-        Symbol result = symbols.newTemporary(Decoration.getType(ctx));
-        List<Symbol> operands;
-        if (ctx.expressionList() != null) {
-            operands = ctx.expressionList().expr().stream().map(this::visitExpr).collect(Collectors.toList());
-        } else {
-            operands = new ArrayList<>();
+    public Symbol visitCall(Call expr) {
+        Symbol result = symbols.newTemporary(expr.getType());
+        Symbol[] operands = new Symbol[expr.getArgs().size() + 2];
+        operands[0] = result;
+        operands[1] = expr.getFunction();
+        for (int i = 0; i < expr.getArgs().size(); i++) {
+            operands[i + 2] = expr.getArgs().get(i).accept(this);
         }
-        operands.add(0, result);
-        operands.add(1, visitTerminal(ctx.ID()));
-        listing.emit(CALL, operands.toArray(new Symbol[0]));
+        listing.emit(CALL, operands);
         return result;
     }
 
     @Override
-    public Symbol visitReturn(TigerParser.ReturnContext ctx) {
-        Symbol value = visitExpr(ctx.expr());
+    public Symbol visitReturn(Return stat) {
+        Symbol value = stat.getValue().accept(this);
         listing.emit(RETURN, value);
         return null;
     }
 
-    private Opcode getExprOpcode(int op) {
+    private Opcode getExprOpcode(Operator op) {
         switch (op) {
-            /*case TigerParser.POW: // we desugar exponentiation at the IR level
+            /*case POW: // we desugar exponentiation at the IR level
                 return POW;*/
-            case TigerParser.DIV:
+            case DIV:
                 return DIV;
-            case TigerParser.MULT:
+            case MULT:
                 return MUL;
-            case TigerParser.PLUS:
+            case PLUS:
                 return ADD;
-            case TigerParser.MINUS:
+            case MINUS:
                 return SUB;
 
-            case TigerParser.EQ:
+            case EQ:
                 return BEQ;
-            case TigerParser.NEQ:
+            case NEQ:
                 return BNE;
-            case TigerParser.GREATER:
+            case GREATER:
                 return BGT;
-            case TigerParser.LESSER:
+            case LESSER:
                 return BLT;
-            case TigerParser.GREATEREQ:
+            case GREATEREQ:
                 return BGE;
-            case TigerParser.LESSEREQ:
+            case LESSEREQ:
                 return BLE;
 
-            case TigerParser.AND:
+            case AND:
                 return AND;
-            case TigerParser.OR:
+            case OR:
                 return OR;
         }
         throw new RuntimeException("invalid op");
     }
 
     @Override
-    public Symbol visitLvalue(TigerParser.LvalueContext ctx) { // actually an rvalue :^)
-        if (ctx.LBRACK() != null) { // array
-            Symbol result = symbols.newTemporary(Decoration.getType(ctx));
-            Symbol index = visitExpr(ctx.expr());
-            Symbol array = visitTerminal(ctx.ID());
-            listing.emit(LOAD, result, array, index);
-            return result;
-        } else { // scalar
-            return visitTerminal(ctx.ID());
-        }
+    public Symbol visitArrayLoad(ArrayLoad expr) {
+        Symbol result = symbols.newTemporary(expr.getType());
+        Symbol index = expr.getIndex().accept(this);
+        listing.emit(LOAD, result, expr.getArray(), index);
+        return result;
     }
 
-    private void branchOnExpr(TigerParser.ExprContext ctx, Symbol trueLabel) {
-        // strip redundant parenthesized expressions
-        TigerParser.AtomContext atom = ctx.atom();
-        while (atom != null) {
-            ctx = atom.expr();
-            atom = ctx.atom();
-        }
+    @Override
+    public Symbol visitOperand(Operand expr) {
+        return expr.getSymbol();
+    }
 
-        if (Decoration.isComparison(ctx)) {
-            Symbol o1 = visitExpr(ctx.expr(0));
-            Symbol o2 = visitExpr(ctx.expr(1));
-            Opcode opcode = getExprOpcode(ctx.op.getType());
-            listing.emit(opcode, o1, o2, trueLabel);
+    private void branchOnExpr(Expr expr, Symbol trueLabel) {
+        if (expr instanceof Binary && ((Binary) expr).getOperator().isComparison()) {
+            Binary comparison = (Binary) expr;
+            Symbol o1 = comparison.getLeft().accept(this);
+            Symbol o2 = comparison.getRight().accept(this);
+            listing.emit(getExprOpcode(comparison.getOperator()), o1, o2, trueLabel);
         } else { // do comparison ourselves. 0 is falsy.
-            Symbol result = visitExpr(ctx);
+            Symbol result = expr.accept(this);
             listing.emit(BNE, result, iconst(0), trueLabel);
         }
     }
 
     @Override
-    public Symbol visitIfBlock(TigerParser.IfBlockContext ctx) {
+    public Symbol visitIf(If stat) {
         Symbol trueLabel = symbols.newLabel();
         Symbol endLabel = symbols.newLabel();
-        branchOnExpr(ctx.expr(), trueLabel);
-        if (ctx.ELSE() != null) { // do we have an else block
-            visitStatSeq(ctx.statSeq(1));
+        branchOnExpr(stat.getCondition(), trueLabel);
+        if (stat.getElseBody() != null) { // do we have an else block
+            visitStatements(stat.getElseBody());
         }
         listing.emit(GOTO, endLabel);
 
         listing.emit(trueLabel);
-        visitStatSeq(ctx.statSeq(0));
+        visitStatements(stat.getThenBody());
         listing.emit(endLabel);
         return null;
     }
 
     @Override
-    public Symbol visitWhileBlock(TigerParser.WhileBlockContext ctx) {
+    public Symbol visitWhile(While stat) {
         Symbol startLabel = symbols.newLabel();
         Symbol trueLabel = symbols.newLabel();
         Symbol endLabel = symbols.newLabel();
 
         listing.emit(startLabel);
-        branchOnExpr(ctx.expr(), trueLabel);
+        branchOnExpr(stat.getCondition(), trueLabel);
         listing.emit(GOTO, endLabel);
 
         listing.emit(trueLabel);
         breakTargets.push(endLabel);    // push break target
-        visitStatSeq(ctx.statSeq());
+        visitStatements(stat.getBody());
         breakTargets.pop();             // pop break target
         listing.emit(GOTO, startLabel);
 
@@ -285,24 +282,24 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
     }
 
     @Override
-    public Symbol visitForBlock(TigerParser.ForBlockContext ctx) {
+    public Symbol visitFor(For stat) {
         Symbol startLabel = symbols.newLabel();
         Symbol trueLabel = symbols.newLabel();
         Symbol endLabel = symbols.newLabel();
 
         Symbol counter = symbols.newTemporary(typeManager.getIntPrimitiveType());
-        Symbol initial = visitExpr(ctx.expr(0));
+        Symbol initial = stat.getFrom().accept(this);
         listing.emit(ASSIGN, counter, initial);
 
         listing.emit(startLabel);
-        listing.emit(ASSIGN, visitTerminal(ctx.ID()), counter); // bind var to counter
-        Symbol bound = visitExpr(ctx.expr(1));
+        listing.emit(ASSIGN, stat.getVariable(), counter); // bind var to counter
+        Symbol bound = stat.getTo().accept(this);
         listing.emit(BLE, counter, bound, trueLabel);
         listing.emit(GOTO, endLabel);
 
         listing.emit(trueLabel);
         breakTargets.push(endLabel);    // push break target
-        visitStatSeq(ctx.statSeq());
+        visitStatements(stat.getBody());
         breakTargets.pop();             // pop break target
 
         listing.emit(ADD, counter, counter, iconst(1));
@@ -313,7 +310,7 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
     }
 
     @Override
-    public Symbol visitBreak(TigerParser.BreakContext ctx) {
+    public Symbol visitBreak(Break stat) {
         if (breakTargets.isEmpty()) {
             throw new RuntimeException("no break target"); // should be prevented by semantic check
         }
@@ -321,11 +318,6 @@ public class IRGenVisitor extends TigerParserBaseVisitor<Symbol> {
         return null;
     }
 
-    @Override
-    public Symbol visitTerminal(TerminalNode node) {
-        return Decoration.getSymbol(node);
-    }
-
     private Symbol iconst(int val) {
         return symbols.addConst(typeManager.getIntPrimitiveType(), val);
     }
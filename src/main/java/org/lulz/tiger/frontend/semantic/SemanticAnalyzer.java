@@ -0,0 +1,124 @@
+package org.lulz.tiger.frontend.semantic;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.common.Decoration;
+import org.lulz.tiger.common.Parallelism;
+import org.lulz.tiger.common.symbol.ScopeBindingListener;
+import org.lulz.tiger.common.symbol.SymbolTable;
+import org.lulz.tiger.common.type.TypeManager;
+import org.lulz.tiger.frontend.ast.AstBuilder;
+import org.lulz.tiger.frontend.ast.FunctionDecl;
+import org.lulz.tiger.frontend.symbol.BindingAnalysisListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Binding, type checking and structural checks after symbol collection, in one walk of the parse tree. Each node's
+// events go to the passes in that order, and a rule's exit comes after all of its children, so every pass still sees
+// the decorations it depends on. Scopes are entered once per node, before any pass sees it, and left after all have.
+// The body of each function of the program is checked and lowered to the AST by a task of its own, on a fork of the
+// symbol table and a decoration of its own. The first error in tree order is reported, whichever pass finds it.
+public class SemanticAnalyzer {
+    private ParserRuleContext root;
+    private SymbolTable symbols;
+    private TypeManager typeManager;
+    private Decoration collected;
+    private Decoration decoration;
+    private ScopeBindingListener scopes;
+    private List<ParseTreeListener> passes;
+    private Map<TigerParser.FunctionDeclarationContext, CompletableFuture<FunctionDecl>> functions =
+            new LinkedHashMap<>();
+
+    // decoration holds the scopes and declarations found by symbol collection, and is only read from here on
+    public SemanticAnalyzer(TigerParser.TigerProgramContext program, SymbolTable symbols, TypeManager typeManager,
+                            Decoration decoration) {
+        this((ParserRuleContext) program, symbols, typeManager, decoration);
+    }
+
+    private SemanticAnalyzer(ParserRuleContext root, SymbolTable symbols, TypeManager typeManager,
+                             Decoration collected) {
+        this.root = root;
+        this.symbols = symbols;
+        this.typeManager = typeManager;
+        this.collected = collected;
+        this.decoration = new Decoration(collected);
+        this.scopes = new ScopeBindingListener(symbols, decoration);
+        this.passes = List.of(
+                new BindingAnalysisListener(symbols, typeManager, decoration),
+                new TypeCheckListener(typeManager, decoration),
+                new StructuralCheckListener(typeManager, decoration));
+    }
+
+    // checks the program and returns its AST
+    public FunctionDecl analyze() {
+        RuntimeException failure = null;
+        try {
+            walk(root);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // functions scheduled before a failure of the walk come before it in the tree
+        Map<TigerParser.FunctionDeclarationContext, FunctionDecl> built = new LinkedHashMap<>();
+        for (Map.Entry<TigerParser.FunctionDeclarationContext, CompletableFuture<FunctionDecl>> function
+                : functions.entrySet()) {
+            built.put(function.getKey(), Parallelism.join(function.getValue()));
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new AstBuilder(decoration, built).build((TigerParser.TigerProgramContext) root);
+    }
+
+    private FunctionDecl analyzeFunction() {
+        walk(root);
+        return new AstBuilder(decoration, Map.of()).build((TigerParser.FunctionDeclarationContext) root);
+    }
+
+    private void walk(ParseTree tree) {
+        if (tree instanceof ErrorNode) {
+            for (ParseTreeListener pass : passes) {
+                pass.visitErrorNode((ErrorNode) tree);
+            }
+            return;
+        }
+        if (tree instanceof TerminalNode) {
+            for (ParseTreeListener pass : passes) {
+                pass.visitTerminal((TerminalNode) tree);
+            }
+            return;
+        }
+        if (tree instanceof TigerParser.FunctionDeclarationContext && root instanceof TigerParser.TigerProgramContext) {
+            schedule((TigerParser.FunctionDeclarationContext) tree);
+            return;
+        }
+        ParserRuleContext ctx = (ParserRuleContext) tree;
+        ctx.enterRule(scopes);
+        for (ParseTreeListener pass : passes) {
+            pass.enterEveryRule(ctx);
+            ctx.enterRule(pass);
+        }
+        for (int i = 0; i < ctx.getChildCount(); i++) {
+            walk(ctx.getChild(i));
+        }
+        for (ParseTreeListener pass : passes) {
+            ctx.exitRule(pass);
+            pass.exitEveryRule(ctx);
+        }
+        ctx.exitRule(scopes);
+    }
+
+    // a function declared inside another is walked by the task of the outer one, whose structural checks reject it
+    private void schedule(TigerParser.FunctionDeclarationContext function) {
+        SymbolTable fork = symbols.fork();
+        functions.put(function, CompletableFuture.supplyAsync(
+                () -> new SemanticAnalyzer(function, fork, typeManager, collected).analyzeFunction(),
+                Parallelism.executor()));
+    }
+}
@@ -2,9 +2,8 @@ package org.lulz.tiger.frontend.semantic;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.antlr.TigerParserBaseListener;
 import org.lulz.tiger.common.Decoration;
-import org.lulz.tiger.common.symbol.ScopeBindingListener;
-import org.lulz.tiger.common.symbol.SymbolTable;
 import org.lulz.tiger.common.type.FunctionType;
 import org.lulz.tiger.common.type.Type;
 import org.lulz.tiger.common.type.TypeManager;
@@ -13,30 +12,29 @@ import org.lulz.tiger.frontend.SemanticException;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
-public class StructuralCheckListener extends ScopeBindingListener {
+public class StructuralCheckListener extends TigerParserBaseListener {
     private TypeManager typeManager;
+    private Decoration decoration;
     private Deque<FunctionMeta> functionStack = new ArrayDeque<>();
     private Deque<ControlMeta> controlStack = new ArrayDeque<>(); // for loop constructs
 
-    public StructuralCheckListener(SymbolTable symbols, TypeManager typeManager) {
-        super(symbols);
+    public StructuralCheckListener(TypeManager typeManager, Decoration decoration) {
         this.typeManager = typeManager;
+        this.decoration = decoration;
     }
 
     @Override
     public void enterFunctionDeclaration(TigerParser.FunctionDeclarationContext ctx) {
-        super.enterFunctionDeclaration(ctx);
         if (!functionStack.isEmpty()) {
             throw new SemanticException(ctx, "nested functions are not allowed");
         }
 
-        functionStack.push(new FunctionMeta(Decoration.getType(ctx)));
+        functionStack.push(new FunctionMeta(decoration.getType(ctx)));
         controlStack.push(new ControlMeta(null, false));
     }
 
     @Override
     public void exitFunctionDeclaration(TigerParser.FunctionDeclarationContext ctx) {
-        super.exitFunctionDeclaration(ctx);
         if (!functionStack.pop().hasReturn) {
             throw new SemanticException(ctx.END(), "missing return statement");
         }
@@ -52,7 +50,7 @@ public class StructuralCheckListener extends ScopeBindingListener {
         functionStack.peek().hasReturn = true;
 
         Type returnType = ((FunctionType) functionStack.peek().functionType).getRetVal();
-        if (!typeManager.isAssignableFrom(returnType, Decoration.getType(ctx.expr()))) {
+        if (!typeManager.isAssignableFrom(returnType, decoration.getType(ctx.expr()))) {
             throw new SemanticException(ctx.expr(), "incompatible return type");
         }
     }
@@ -2,34 +2,34 @@ package org.lulz.tiger.frontend.semantic;
 
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.antlr.TigerParserBaseListener;
 import org.lulz.tiger.common.Decoration;
-import org.lulz.tiger.common.symbol.ScopeBindingListener;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.symbol.SymbolClass;
-import org.lulz.tiger.common.symbol.SymbolTable;
 import org.lulz.tiger.common.type.*;
 import org.lulz.tiger.frontend.SemanticException;
 
-public class TypeCheckListener extends ScopeBindingListener {
+public class TypeCheckListener extends TigerParserBaseListener {
     private TypeManager typeManager;
+    private Decoration decoration;
 
-    public TypeCheckListener(SymbolTable symbols, TypeManager typeManager) {
-        super(symbols);
+    public TypeCheckListener(TypeManager typeManager, Decoration decoration) {
         this.typeManager = typeManager;
+        this.decoration = decoration;
     }
 
     @Override
     public void exitLiteral(TigerParser.LiteralContext ctx) {
-        Decoration.putType(ctx, Decoration.getType(ctx.getChild(0)));
+        decoration.putType(ctx, decoration.getType(ctx.getChild(0)));
     }
 
     @Override
     public void exitLvalue(TigerParser.LvalueContext ctx) {
-        Symbol symbol = Decoration.getSymbol(ctx.ID());
+        Symbol symbol = decoration.getSymbol(ctx.ID());
         if (symbol.getSymbolClass() != SymbolClass.VAR) {
             throw new SemanticException(ctx.ID(), "expected variable symbol");
         }
-        Type type = Decoration.getType(ctx.ID());
+        Type type = decoration.getType(ctx.ID());
 
         // is this an array access?
         if (ctx.LBRACK() != null) {
@@ -38,15 +38,15 @@ public class TypeCheckListener extends ScopeBindingListener {
                 throw new SemanticException(ctx.ID(), "expected array type");
             }
             // expression type must be int primitive (no derived types)
-            Type exprType = Decoration.getType(ctx.expr());
+            Type exprType = decoration.getType(ctx.expr());
             if (exprType != typeManager.getIntPrimitiveType()) {
                 throw new SemanticException(ctx.expr(), "expected int type");
             }
             // lvalue type is element type
-            Decoration.putType(ctx, ((ArrayType) type).getElementType());
+            decoration.putType(ctx, ((ArrayType) type).getElementType());
         } else {
             // not array access
-            Decoration.putType(ctx, type);
+            decoration.putType(ctx, type);
         }
     }
 
@@ -55,29 +55,29 @@ public class TypeCheckListener extends ScopeBindingListener {
         ParserRuleContext child;
         if (ctx.literal() != null) {
             child = ctx.literal();
-            Decoration.setComparison(ctx, false);
+            decoration.setComparison(ctx, false);
         } else if (ctx.lvalue() != null) {
             child = ctx.lvalue();
-            Decoration.setComparison(ctx, false);
+            decoration.setComparison(ctx, false);
         } else if (ctx.expr() != null) {
             child = ctx.expr();
-            Decoration.setComparison(ctx, Decoration.isComparison(child));
+            decoration.setComparison(ctx, decoration.isComparison(child));
         } else {
             throw new RuntimeException("atom without child");
         }
-        Type type = Decoration.getType(child);
-        Decoration.putType(ctx, type);
+        Type type = decoration.getType(child);
+        decoration.putType(ctx, type);
     }
 
     @Override
     public void exitExpr(TigerParser.ExprContext ctx) {
         if (ctx.atom() != null) { // atom
-            Type type = Decoration.getType(ctx.atom());
-            Decoration.putType(ctx, type);
-            Decoration.setComparison(ctx, Decoration.isComparison(ctx.atom()));
+            Type type = decoration.getType(ctx.atom());
+            decoration.putType(ctx, type);
+            decoration.setComparison(ctx, decoration.isComparison(ctx.atom()));
         } else { // binary op
-            Type type1 = Decoration.getType(ctx.expr(0));
-            Type type2 = Decoration.getType(ctx.expr(1));
+            Type type1 = decoration.getType(ctx.expr(0));
+            Type type2 = decoration.getType(ctx.expr(1));
             Type resultType;
             switch (ctx.op.getType()) {
                 case TigerParser.POW:
@@ -88,7 +88,7 @@ public class TypeCheckListener extends ScopeBindingListener {
                         throw new SemanticException(ctx.expr(1), "expected int");
                     }
                     resultType = type1;
-                    Decoration.setComparison(ctx, false);
+                    decoration.setComparison(ctx, false);
                     break;
                 case TigerParser.DIV:
                 case TigerParser.MULT:
@@ -98,7 +98,7 @@ public class TypeCheckListener extends ScopeBindingListener {
                         throw new SemanticException(ctx.getChild(1), "cannot operate on incompatible types");
                     }
                     resultType = typeManager.getResultType(type1, type2);
-                    Decoration.setComparison(ctx, false);
+                    decoration.setComparison(ctx, false);
                     break;
                 case TigerParser.EQ:
                 case TigerParser.NEQ:
@@ -109,38 +109,38 @@ public class TypeCheckListener extends ScopeBindingListener {
                     if (!typeManager.areTypesCompatible(type1, type2)) {
                         throw new SemanticException(ctx.getChild(1), "cannot compare incompatible types");
                     }
-                    if (Decoration.isComparison(ctx.expr(0))) {
+                    if (decoration.isComparison(ctx.expr(0))) {
                         throw new SemanticException(ctx.expr(0), "operand cannot be comparison");
                     }
-                    if (Decoration.isComparison(ctx.expr(1))) {
+                    if (decoration.isComparison(ctx.expr(1))) {
                         throw new SemanticException(ctx.expr(1), "operand cannot be comparison");
                     }
                     resultType = typeManager.getIntPrimitiveType();
-                    Decoration.setComparison(ctx, true);
+                    decoration.setComparison(ctx, true);
                     break;
                 case TigerParser.AND:
                 case TigerParser.OR:
                     // valid operands are comparison results
-                    /*if (!Decoration.isComparison(ctx.expr(0))) {
+                    /*if (!decoration.isComparison(ctx.expr(0))) {
                         throw new SemanticException(ctx.expr(0), "operand must be comparison");
                     }
-                    if (!Decoration.isComparison(ctx.expr(1))) {
+                    if (!decoration.isComparison(ctx.expr(1))) {
                         throw new SemanticException(ctx.expr(1), "operand must be comparison");
                     }*/
                     resultType = typeManager.getIntPrimitiveType();
-                    Decoration.setComparison(ctx, false);
+                    decoration.setComparison(ctx, false);
                     break;
                 default:
                     throw new RuntimeException("unknown op"); // shouldn't happen
             }
-            Decoration.putType(ctx, resultType);
+            decoration.putType(ctx, resultType);
         }
     }
 
     @Override
     public void exitAssignment(TigerParser.AssignmentContext ctx) {
-        Type ltype = Decoration.getType(ctx.lvalue());
-        Type rtype = Decoration.getType(ctx.expr());
+        Type ltype = decoration.getType(ctx.lvalue());
+        Type rtype = decoration.getType(ctx.expr());
         if (!typeManager.isAssignableFrom(ltype, rtype)) {
             throw new SemanticException(ctx.ASSIGN(), "cannot assign: incompatible types");
         }
@@ -148,8 +148,8 @@ public class TypeCheckListener extends ScopeBindingListener {
 
     @Override
     public void exitOptionalInit(TigerParser.OptionalInitContext ctx) {
-        Type ltype = Decoration.getType(ctx.parent);
-        Type rtype = Decoration.getType(ctx.literal());
+        Type ltype = decoration.getType(ctx.parent);
+        Type rtype = decoration.getType(ctx.literal());
         if (ltype.getKind() == TypeKind.ARRAY) {
             ltype = ((ArrayType) ltype).getElementType();
         }
@@ -160,12 +160,12 @@ public class TypeCheckListener extends ScopeBindingListener {
 
     @Override
     public void exitFncallAssignment(TigerParser.FncallAssignmentContext ctx) {
-        Symbol symbol = Decoration.getSymbol(ctx.ID());
+        Symbol symbol = decoration.getSymbol(ctx.ID());
         if (symbol.getSymbolClass() != SymbolClass.VAR) {
             throw new SemanticException(ctx.ID(), "expected variable symbol");
         }
-        Type ltype = Decoration.getType(ctx.ID());
-        Type rtype = Decoration.getType(ctx.fncall());
+        Type ltype = decoration.getType(ctx.ID());
+        Type rtype = decoration.getType(ctx.fncall());
         if (!typeManager.isAssignableFrom(ltype, rtype)) {
             throw new SemanticException(ctx.ASSIGN(), "cannot assign: incompatible types");
         }
@@ -173,7 +173,7 @@ public class TypeCheckListener extends ScopeBindingListener {
 
     @Override
     public void exitFncall(TigerParser.FncallContext ctx) {
-        Type fntype = Decoration.getType(ctx.ID());
+        Type fntype = decoration.getType(ctx.ID());
         if (fntype.getKind() != TypeKind.FUNCTION) {
             throw new SemanticException(ctx.ID(), "expected function identifier");
         }
@@ -185,7 +185,7 @@ public class TypeCheckListener extends ScopeBindingListener {
             throw new SemanticException(ctx.expressionList(), "expected " + argTypes.length + " arguments");
         }
         for (int i = 0; i < argTypes.length; i++) {
-            Type givenType = Decoration.getType(ctx.expressionList().expr(i));
+            Type givenType = decoration.getType(ctx.expressionList().expr(i));
             if (!typeManager.isAssignableFrom(argTypes[0], givenType)
                     && argTypes[0] != givenType) { // isAssignableFrom doesn't handle array type
                 throw new SemanticException(ctx.expressionList().expr(i), "incompatible argument type");
@@ -193,12 +193,12 @@ public class TypeCheckListener extends ScopeBindingListener {
         }
 
         // set return type
-        Decoration.putType(ctx, ((FunctionType) fntype).getRetVal());
+        decoration.putType(ctx, ((FunctionType) fntype).getRetVal());
     }
 
     @Override
     public void exitIfBlock(TigerParser.IfBlockContext ctx) {
-        Type type = Decoration.getType(ctx.expr());
+        Type type = decoration.getType(ctx.expr());
         if (type != typeManager.getIntPrimitiveType()) {
             throw new SemanticException(ctx.expr(), "expected int type");
         }
@@ -206,7 +206,7 @@ public class TypeCheckListener extends ScopeBindingListener {
 
     @Override
     public void exitWhileBlock(TigerParser.WhileBlockContext ctx) {
-        Type type = Decoration.getType(ctx.expr());
+        Type type = decoration.getType(ctx.expr());
         if (type != typeManager.getIntPrimitiveType()) {
             throw new SemanticException(ctx.expr(), "expected int type");
         }
@@ -214,15 +214,15 @@ public class TypeCheckListener extends ScopeBindingListener {
 
     @Override
     public void exitForBlock(TigerParser.ForBlockContext ctx) {
-        Type varType = Decoration.getType(ctx.ID());
+        Type varType = decoration.getType(ctx.ID());
         if (varType != typeManager.getIntPrimitiveType()) {
             throw new SemanticException(ctx.ID(), "expected int type");
         }
-        Type expr1Type = Decoration.getType(ctx.expr(0));
+        Type expr1Type = decoration.getType(ctx.expr(0));
         if (expr1Type != typeManager.getIntPrimitiveType()) {
             throw new SemanticException(ctx.expr(0), "expected int type");
         }
-        Type expr2Type = Decoration.getType(ctx.expr(1));
+        Type expr2Type = decoration.getType(ctx.expr(1));
         if (expr2Type != typeManager.getIntPrimitiveType()) {
             throw new SemanticException(ctx.expr(1), "expected int type");
         }
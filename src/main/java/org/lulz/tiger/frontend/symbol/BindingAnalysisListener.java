@@ -3,8 +3,8 @@ package org.lulz.tiger.frontend.symbol;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.lulz.tiger.antlr.TigerLexer;
 import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.antlr.TigerParserBaseListener;
 import org.lulz.tiger.common.Decoration;
-import org.lulz.tiger.common.symbol.ScopeBindingListener;
 import org.lulz.tiger.common.symbol.Symbol;
 import org.lulz.tiger.common.symbol.SymbolTable;
 import org.lulz.tiger.common.type.FunctionType;
@@ -12,20 +12,20 @@ import org.lulz.tiger.common.type.Type;
 import org.lulz.tiger.common.type.TypeManager;
 import org.lulz.tiger.frontend.SemanticException;
 
-public class BindingAnalysisListener extends ScopeBindingListener {
+// resolves identifiers in the current scope, which SemanticAnalyzer keeps in step with the walk
+public class BindingAnalysisListener extends TigerParserBaseListener {
     private SymbolTable symbols;
     private TypeManager typeManager;
+    private Decoration decoration;
 
-    public BindingAnalysisListener(SymbolTable symbols, TypeManager typeManager) {
-        super(symbols);
+    public BindingAnalysisListener(SymbolTable symbols, TypeManager typeManager, Decoration decoration) {
         this.symbols = symbols;
         this.typeManager = typeManager;
+        this.decoration = decoration;
     }
 
     @Override
     public void enterTigerProgram(TigerParser.TigerProgramContext ctx) {
-        super.enterTigerProgram(ctx);
-
         // define standard library functions
         symbols.addFunction("printi", new FunctionType(new Type[]{typeManager.getIntPrimitiveType()}, typeManager.getIntPrimitiveType()));
         symbols.addFunction("printf", new FunctionType(new Type[]{typeManager.getFloatPrimitiveType()}, typeManager.getIntPrimitiveType()));
@@ -39,14 +39,14 @@ public class BindingAnalysisListener extends ScopeBindingListener {
             if (symbol == null) {
                 throw new SemanticException(node, "undeclared symbol");
             }
-            Decoration.putSymbol(node, symbol);
-            Decoration.putType(node, symbol.getType());
+            decoration.putSymbol(node, symbol);
+            decoration.putType(node, symbol.getType());
         } else if (node.getSymbol().getType() == TigerLexer.INTLIT) {
             try {
                 int val = Integer.parseInt(node.getText());
                 Symbol symbol = symbols.addConst(typeManager.getIntPrimitiveType(), val);
-                Decoration.putSymbol(node, symbol);
-                Decoration.putType(node, symbol.getType());
+                decoration.putSymbol(node, symbol);
+                decoration.putType(node, symbol.getType());
             } catch (NumberFormatException e) {
                 throw new SemanticException(node, "invalid integer");
             }
@@ -54,8 +54,8 @@ public class BindingAnalysisListener extends ScopeBindingListener {
             try {
                 float val = Float.parseFloat(node.getText());
                 Symbol symbol = symbols.addConst(typeManager.getFloatPrimitiveType(), val);
-                Decoration.putSymbol(node, symbol);
-                Decoration.putType(node, symbol.getType());
+                decoration.putSymbol(node, symbol);
+                decoration.putType(node, symbol.getType());
             } catch (NumberFormatException e) {
                 throw new SemanticException(node, "invalid float");
             }
@@ -19,21 +19,23 @@ import java.util.List;
 public class SymbolListener extends TigerParserBaseListener {
     private SymbolTable symbols;
     private TypeManager typeManager;
+    private Decoration decoration;
 
-    public SymbolListener(SymbolTable symbols, TypeManager typeManager) {
+    public SymbolListener(SymbolTable symbols, TypeManager typeManager, Decoration decoration) {
         this.symbols = symbols;
         this.typeManager = typeManager;
+        this.decoration = decoration;
     }
 
     @Override
     public void enterTigerProgram(TigerParser.TigerProgramContext ctx) {
         int scopeId = symbols.pushNewScope("<global>");
-        Decoration.putScopeId(ctx, scopeId);
+        decoration.putScopeId(ctx, scopeId);
 
         // define main function
         Symbol main = symbols.addFunction("main", new FunctionType(new Type[0], typeManager.getIntPrimitiveType()));
         symbols.pushFunction(main);
-        Decoration.putSymbol(ctx, main);
+        decoration.putSymbol(ctx, main);
     }
 
     @Override
@@ -45,7 +47,7 @@ public class SymbolListener extends TigerParserBaseListener {
     @Override
     public void enterLetBlock(TigerParser.LetBlockContext ctx) {
         int scopeId = symbols.pushNewScope();
-        Decoration.putScopeId(ctx, scopeId);
+        decoration.putScopeId(ctx, scopeId);
     }
 
     @Override
@@ -84,19 +86,19 @@ public class SymbolListener extends TigerParserBaseListener {
 
         Symbol funcSymbol = symbols.addFunction(ctx.ID().getText(), funcType);
         symbols.pushFunction(funcSymbol);
-        Decoration.putType(ctx, funcType);
-        Decoration.putSymbol(ctx, funcSymbol);
+        decoration.putType(ctx, funcType);
+        decoration.putSymbol(ctx, funcSymbol);
 
         // push function scope
         int scopeId = symbols.pushNewScope(ctx.ID().getText());
-        Decoration.putScopeId(ctx, scopeId);
+        decoration.putScopeId(ctx, scopeId);
 
         // register function argument variables
         for (int i = 0; i < paramTypes.size(); i++) {
             if (symbols.isDefinedInCurrentScope(paramNames.get(i))) {
                 throw new SemanticException(ctx.paramList().param(i), "symbol already defined in scope");
             }
-            symbols.addVariable(paramNames.get(i), paramTypes.get(i)).setArgument(true);
+            symbols.addParameter(paramNames.get(i), paramTypes.get(i));
         }
     }
 
@@ -124,7 +126,7 @@ public class SymbolListener extends TigerParserBaseListener {
             }
             symbols.addVariable(id.getText(), type);
         }
-        Decoration.putType(ctx, type); // for optionalInit type check
+        decoration.putType(ctx, type); // for optionalInit type check
     }
 
     private Type createType(TigerParser.TypeContext ctx) {
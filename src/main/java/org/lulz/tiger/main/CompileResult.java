@@ -0,0 +1,77 @@
+package org.lulz.tiger.main;
+
+import org.lulz.tiger.common.ir.IRListing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Outcome of one TigerCompiler call
+public class CompileResult {
+    private IRListing listing;
+    private String assembly;
+    private String failure;
+    private List<SourceError> errors = new ArrayList<>();
+    private Map<String, Duration> timings = new LinkedHashMap<>();
+    private int cachedFunctions;
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+    // why compilation stopped, e.g. "stopped due to semantic error", or null on success
+    public String getFailure() {
+        return failure;
+    }
+
+    void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    public List<SourceError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    void addError(SourceError error) {
+        errors.add(error);
+    }
+
+    // null if compilation stopped before IR generation finished
+    public IRListing getListing() {
+        return listing;
+    }
+
+    void setListing(IRListing listing) {
+        this.listing = listing;
+    }
+
+    // null on failure, or when the assembly was written to a caller's Writer
+    public String getAssembly() {
+        return assembly;
+    }
+
+    void setAssembly(String assembly) {
+        this.assembly = assembly;
+    }
+
+    // wall time per phase, in the order the phases ran
+    public Map<String, Duration> getTimings() {
+        return Collections.unmodifiableMap(timings);
+    }
+
+    // number of functions whose assembly came from the function cache
+    public int getCachedFunctions() {
+        return cachedFunctions;
+    }
+
+    void setCachedFunctions(int cachedFunctions) {
+        this.cachedFunctions = cachedFunctions;
+    }
+
+    void addTiming(String phase, long startNanos) {
+        timings.put(phase, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+}
@@ -0,0 +1,183 @@
+package org.lulz.tiger.main;
+
+import picocli.CommandLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Long-running compiler process. The lexer and parser DFA caches are static in the generated ANTLR classes, so
+// they stay warm across requests together with the loaded classes and JIT-compiled code.
+//
+// Protocol, one request per connection: the client sends the daemon's token, its working directory, the argument
+// count and the arguments as they would be passed to Main; the daemon answers with the length of the captured output,
+// the output bytes and the exit code.
+//
+// Any local user can connect to a loopback port, so at startup the daemon writes a random token to a file only its
+// owner can read, and serves only clients that send it. Requests may only reach paths in the owner's home directory.
+// Requests are handled by one worker per core, and a client that does not send its request in time is dropped, so
+// connections that never send anything cannot tie up the workers.
+class CompilerDaemon {
+    static final int DEFAULT_PORT = 7419;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+
+    private int port;
+    private PrintStream log;
+    private String token;
+
+    CompilerDaemon(int port, PrintStream log) {
+        this.port = port;
+        this.log = log;
+    }
+
+    void serve() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            token = createToken(port);
+            log.println("tiger daemon listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                pool.execute(() -> handle(socket));
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            String clientToken = in.readUTF();
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    clientToken.getBytes(StandardCharsets.UTF_8))) {
+                return;     // not the owner; the connection is closed without an answer
+            }
+            Path workingDirectory = Paths.get(in.readUTF());
+            int argc = in.readInt();
+            List<String> args = new ArrayList<>();
+            for (int i = 0; i < argc; i++) {
+                args.add(in.readUTF());
+            }
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream output = new PrintStream(buffer, true);
+            int exitCode;
+            if (!Main.isInHome(workingDirectory)) {
+                output.println("Invalid working directory: " + workingDirectory + " is outside of the home directory");
+                exitCode = -1;
+            } else if (args.contains("--daemon") || args.contains("--connect") || args.contains("--run")
+                    || args.contains("--watch")) {
+                output.println("Invalid flag: --daemon, --connect, --run and --watch cannot be sent to the daemon");
+                exitCode = -1;
+            } else {
+                PrintWriter writer = new PrintWriter(output, true);
+                exitCode = new CommandLine(new Main(workingDirectory, output))
+                        .setCaseInsensitiveEnumValuesAllowed(true)
+                        .setOut(writer)
+                        .setErr(writer)
+                        .execute(args.toArray(new String[0]));
+            }
+
+            byte[] bytes = buffer.toByteArray();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt(exitCode);
+        } catch (IOException e) {
+            log.println("tiger daemon: request from " + socket.getRemoteSocketAddress() + " failed: " + e);
+        }
+    }
+
+    private static Path tokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".tiger", "daemon-" + port + ".token");
+    }
+
+    // replaces the token of an earlier daemon on the port, creating the file with owner-only permissions where the
+    // file system supports them
+    private static String createToken(int port) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+
+        Path file = tokenFile(port);
+        boolean posix = file.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(file.getParent(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(file.getParent());
+        }
+        Files.deleteIfExists(file);
+        if (posix) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.writeString(file, token);
+        return token.toString();
+    }
+
+    // sends a compile request to the daemon and copies its output; returns the exit code, or null if no daemon
+    // is listening on the port or it did not accept this user's token
+    static Integer request(int port, List<String> args, PrintStream output) throws IOException {
+        String token;
+        try {
+            token = Files.readString(tokenFile(port)).strip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (ConnectException e) {
+            return null;
+        }
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeUTF(token);
+            out.writeUTF(Paths.get("").toAbsolutePath().toString());
+            out.writeInt(args.size());
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;    // rejected, e.g. by a daemon started by another user
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            output.write(bytes);
+            output.flush();
+            return in.readInt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.lulz.tiger.main;
+
+import org.lulz.tiger.backend.cache.FunctionCache;
+import org.lulz.tiger.common.Diagnostics;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+// Settings for a TigerCompiler. Debug dumps and progress messages go to the log stream; with no log they are dropped.
+public class CompilerOptions {
+    public enum RegisterAllocation {
+        BRIGGS, NAIVE
+    }
+
+    private boolean printTokens;
+    private boolean printSymtab;
+    private boolean dotCfg;
+    private boolean dotWeb;
+    private boolean cfgLiveness;
+    private boolean compactLiveness;
+    private Diagnostics.Level debugLevel = Diagnostics.Level.SILENT;
+    private RegisterAllocation registerAllocation = RegisterAllocation.BRIGGS;
+    private PrintStream log;
+    private FunctionCache functionCache;
+    private Path irOutput;
+
+    public boolean isPrintTokens() {
+        return printTokens;
+    }
+
+    public void setPrintTokens(boolean printTokens) {
+        this.printTokens = printTokens;
+    }
+
+    public boolean isPrintSymtab() {
+        return printSymtab;
+    }
+
+    public void setPrintSymtab(boolean printSymtab) {
+        this.printSymtab = printSymtab;
+    }
+
+    public boolean isDotCfg() {
+        return dotCfg;
+    }
+
+    public void setDotCfg(boolean dotCfg) {
+        this.dotCfg = dotCfg;
+    }
+
+    public boolean isDotWeb() {
+        return dotWeb;
+    }
+
+    public void setDotWeb(boolean dotWeb) {
+        this.dotWeb = dotWeb;
+    }
+
+    public boolean isCfgLiveness() {
+        return cfgLiveness;
+    }
+
+    public void setCfgLiveness(boolean cfgLiveness) {
+        this.cfgLiveness = cfgLiveness;
+    }
+
+    public boolean isCompactLiveness() {
+        return compactLiveness;
+    }
+
+    public void setCompactLiveness(boolean compactLiveness) {
+        this.compactLiveness = compactLiveness;
+    }
+
+    public Diagnostics.Level getDebugLevel() {
+        return debugLevel;
+    }
+
+    public void setDebugLevel(Diagnostics.Level debugLevel) {
+        this.debugLevel = debugLevel;
+    }
+
+    public RegisterAllocation getRegisterAllocation() {
+        return registerAllocation;
+    }
+
+    public void setRegisterAllocation(RegisterAllocation registerAllocation) {
+        this.registerAllocation = registerAllocation;
+    }
+
+    public PrintStream getLog() {
+        return log;
+    }
+
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    // reused per-function assembly; shared by every compiler using these options, or null for no cache
+    public FunctionCache getFunctionCache() {
+        return functionCache;
+    }
+
+    public void setFunctionCache(FunctionCache functionCache) {
+        this.functionCache = functionCache;
+    }
+
+    // file to save the IR listing of the program to, in the binary format if its name ends in .irb and as text
+    // otherwise, or null
+    public Path getIrOutput() {
+        return irOutput;
+    }
+
+    public void setIrOutput(Path irOutput) {
+        this.irOutput = irOutput;
+    }
+
+    // copy of these options writing to another log, e.g. one per file of a batch
+    public CompilerOptions withLog(PrintStream log) {
+        CompilerOptions copy = new CompilerOptions();
+        copy.printTokens = printTokens;
+        copy.printSymtab = printSymtab;
+        copy.dotCfg = dotCfg;
+        copy.dotWeb = dotWeb;
+        copy.cfgLiveness = cfgLiveness;
+        copy.compactLiveness = compactLiveness;
+        copy.debugLevel = debugLevel;
+        copy.registerAllocation = registerAllocation;
+        copy.log = log;
+        copy.functionCache = functionCache;
+        copy.irOutput = irOutput;
+        return copy;
+    }
+}
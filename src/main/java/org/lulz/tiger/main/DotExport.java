@@ -0,0 +1,52 @@
+package org.lulz.tiger.main;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.io.*;
+import org.lulz.tiger.backend.liveness.Web;
+import org.lulz.tiger.common.ir.BasicBlock;
+import org.lulz.tiger.common.ir.IRListing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Writes the graphs of every function as 'dot' files next to the source. Kept apart from TigerCompiler so that
+// jgrapht-io is only loaded when --dot-cfg or --dot-web is set.
+class DotExport {
+    static void exportWeb(IRListing listing, Path file, PrintStream out) {
+        ComponentNameProvider<Web> vertexIdProvider = new IntegerComponentNameProvider<>();
+        ComponentNameProvider<Web> vertexLabelProvider = new StringComponentNameProvider<>();
+        GraphExporter<Web, DefaultEdge> exporter = new DOTExporter<>(vertexIdProvider, vertexLabelProvider, null, null, null);
+        listing.getFunctions().forEach(function -> {
+            Path path = file.resolveSibling("web." + function.getName() + ".dot");
+            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+                exporter.exportGraph(function.getColoredGraph().toSimpleGraph(), writer);
+                out.println("web saved to " + path.toString());
+            } catch (IOException | ExportException e) {
+                e.printStackTrace();
+            }
+        });
+        out.println();
+    }
+
+    static void exportCfg(IRListing listing, Path file, PrintStream out) {
+        ComponentNameProvider<BasicBlock> vertexIdProvider = new IntegerComponentNameProvider<>();
+        ComponentNameProvider<BasicBlock> vertexLabelProvider = new StringComponentNameProvider<>();
+        ComponentAttributeProvider<BasicBlock> vertexAttributeProvider = component -> Map.of("shape", new DefaultAttribute<>("Mrecord", AttributeType.STRING));
+        GraphExporter<BasicBlock, DefaultEdge> exporter = new DOTExporter<>(vertexIdProvider, vertexLabelProvider, null, vertexAttributeProvider, null);
+
+        listing.getFunctions().forEach(function -> {
+            Path path = file.resolveSibling("cfg." + function.getName() + ".dot");
+            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+                exporter.exportGraph(function.getCfg(), writer);
+                out.println("cfg saved to " + path.toString());
+            } catch (IOException | ExportException e) {
+                e.printStackTrace();
+            }
+        });
+        out.println();
+    }
+}
@@ -1,50 +1,42 @@
 package org.lulz.tiger.main;
 
-import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
-import org.antlr.v4.runtime.tree.TerminalNode;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-import org.jgrapht.io.*;
-import org.lulz.tiger.antlr.TigerLexer;
-import org.lulz.tiger.antlr.TigerParser;
-import org.lulz.tiger.antlr.TigerParserBaseListener;
-import org.lulz.tiger.backend.cfg.ControlFlowAnalyzer;
-import org.lulz.tiger.backend.codegen.MIPSCodeGenerator;
-import org.lulz.tiger.backend.codegen.BriggsRegisterAllocator;
-import org.lulz.tiger.backend.codegen.NaiveRegisterAllocator;
-import org.lulz.tiger.backend.codegen.RegisterAllocator;
-import org.lulz.tiger.backend.liveness.LivenessAnalyzer;
-import org.lulz.tiger.backend.liveness.Web;
-import org.lulz.tiger.common.ir.BasicBlock;
-import org.lulz.tiger.common.ir.IRListing;
-import org.lulz.tiger.common.symbol.SymbolTable;
-import org.lulz.tiger.common.type.TypeManager;
-import org.lulz.tiger.frontend.SemanticException;
-import org.lulz.tiger.frontend.irgen.IRGenVisitor;
-import org.lulz.tiger.frontend.semantic.StructuralCheckListener;
-import org.lulz.tiger.frontend.semantic.TypeCheckListener;
-import org.lulz.tiger.frontend.symbol.BindingAnalysisListener;
-import org.lulz.tiger.frontend.symbol.SymbolListener;
+import org.lulz.tiger.backend.cache.DiskFunctionCache;
+import org.lulz.tiger.backend.cache.MemoryFunctionCache;
+import org.lulz.tiger.common.Diagnostics;
 import picocli.CommandLine;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 
-import java.io.BufferedWriter;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Command line front end for TigerCompiler
 public class Main implements Callable<Integer> {
-    @Parameters(description = "tiger source file")
-    private Path file;
+    private static final long WATCH_SETTLE_MILLIS = 10;
+
+    @Parameters(arity = "0..*", description = "tiger source file; several files or a directory are compiled in batch mode")
+    private List<Path> files;
 
     @Option(names = "--tokens", description = "print token stream from scanner and parser")
     private boolean printTokens;
@@ -61,124 +53,120 @@ public class Main implements Callable<Integer> {
     @Option(names = "--cfg-liveness", description = "include liveness sets in CFG output")
     private boolean cfgLiveness;
 
+    @Option(names = "--compact-liveness", description = "store live sets at basic block boundaries only")
+    private boolean compactLiveness;
+
+    @Option(names = {"--verbose", "-v"}, description = "print debug dumps, repeat for more: -v IR listing, -vv webs and coloring")
+    private boolean[] verbosity = new boolean[0];
+
     @Option(names = {"--out", "-o"}, description = "MIPS assembly output file")
     private Path outFile;
 
+    @Option(names = "--emit-ir", description = "save the IR listing to this file, in binary if it ends in .irb; .ir and .irb files are compiled from their IR")
+    private Path irFile;
+
     @Option(names = "--run", description = "run SPIM simulator after compilation")
     private boolean runSPIM;
 
+    @Option(names = {"--jobs", "-j"}, description = "number of parallel workers in batch mode")
+    private int jobs = Runtime.getRuntime().availableProcessors();
+
     @Option(names = "--ralloc", description = "register allocation mode (${COMPLETION-CANDIDATES})", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
-    private RegisterAllocationMode rallocMode = RegisterAllocationMode.BRIGGS;
+    private CompilerOptions.RegisterAllocation rallocMode = CompilerOptions.RegisterAllocation.BRIGGS;
 
-    @Override
-    public Integer call() throws IOException, InterruptedException {
-        if (cfgLiveness && !dotCfg) {
-            System.out.println("Invalid flag: --cfg-liveness cannot be used without --dot-cfg");
-            System.exit(-1);
-        }
+    @Option(names = "--cache-dir", description = "reuse the assembly of unchanged functions from this directory")
+    private Path cacheDirectory;
 
-        TigerLexer lexer = new TigerLexer(CharStreams.fromPath(file));
-        CommonTokenStream commonTokenStream = new CommonTokenStream(lexer);
-        TigerParser parser = new TigerParser(commonTokenStream);
-
-        TigerErrorListener errorListener = new TigerErrorListener();
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-        parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-
-        // check for scanner errors
-        commonTokenStream.fill();
-        if (errorListener.hasError) {
-            System.out.println("stopped due to scanner error");
-            System.exit(-1);
-        }
-        if (printTokens) {
-            System.out.println("[debug] scanner token stream:");
-            commonTokenStream.getTokens().stream().map(t ->
-                    "< " + lexer.getVocabulary().getSymbolicName(t.getType()) + ", " + t.getText() + " >")
-                    .forEach(System.out::println);
-        }
+    @Option(names = "--cache-size", description = "size cap of the function cache in MB", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+    private long cacheSize = 64;
 
-        // parsing
-        TigerParser.TigerProgramContext programContext = parser.tigerProgram();
+    @Option(names = "--watch", description = "recompile whenever the source file changes, reusing unchanged functions")
+    private boolean watch;
 
-        ParseTreeWalker walker = new ParseTreeWalker();
-        TigerDebugListener listener = new TigerDebugListener();
-        walker.walk(listener, programContext);
+    @Option(names = "--daemon", description = "serve compile requests on a loopback port, keeping the compiler warm")
+    private boolean daemon;
 
-        if (errorListener.hasError) {
-            System.out.println("stopped due to parser error");
-            System.exit(-1);
-        }
-        if (printTokens) {
-            System.out.println("[debug] parser token stream:");
-            Stream<String> parsedNodes = listener.nodes.stream()
-                    .map(node -> lexer.getVocabulary().getSymbolicName(node.getSymbol().getType()));
-            System.out.println(parsedNodes.collect(Collectors.joining(" ")));
-        }
-        System.out.println("successful parse");
+    @Option(names = "--connect", description = "compile through a running daemon, or in-process if none is running")
+    private boolean connect;
 
-        IRListing listing = null;
-        // semantic analysis
-        try {
-            SymbolTable symtab = new SymbolTable();
-            TypeManager typeManager = new TypeManager();
-            walker.walk(new SymbolListener(symtab, typeManager), programContext);
+    @Option(names = "--port", description = "loopback port of the compile daemon", showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+    private int port = CompilerDaemon.DEFAULT_PORT;
 
-            if (printSymtab) {
-                System.out.println("[debug] symbol table:");
-                System.out.println(symtab);
-            }
+    @Spec
+    private CommandLine.Model.CommandSpec spec;
 
-            walker.walk(new BindingAnalysisListener(symtab, typeManager), programContext);
-            walker.walk(new TypeCheckListener(symtab, typeManager), programContext);
-            walker.walk(new StructuralCheckListener(symtab, typeManager), programContext);
-            IRGenVisitor irVisitor = new IRGenVisitor(symtab, typeManager);
-            irVisitor.visit(programContext);
-            listing = irVisitor.getListing();
-            System.out.println(irVisitor.getListing());
-
-            System.out.println("successful compile\n");
-        } catch (SemanticException e) {
-            printSemanticError(e, commonTokenStream);
-            System.out.println("stopped due to semantic error");
-            System.exit(-1);
-        }
+    private Path workingDirectory;  // relative paths are resolved against this, if set
+    private PrintStream out;
+
+    public Main() {
+        this(null, System.out);
+    }
+
+    Main(Path workingDirectory, PrintStream out) {
+        this.workingDirectory = workingDirectory;
+        this.out = out;
+    }
 
-        new ControlFlowAnalyzer(listing).run();
-        if (dotCfg && !cfgLiveness) {   // export cfg without live sets
-            exportCfg(listing);
+    @Override
+    public Integer call() throws IOException, InterruptedException {
+        if (cfgLiveness && !dotCfg) {
+            out.println("Invalid flag: --cfg-liveness cannot be used without --dot-cfg");
+            return -1;
         }
-        new LivenessAnalyzer(listing).run();
-        if (dotCfg && cfgLiveness) {    // export cfg with live sets
-            exportCfg(listing);
+        if (daemon) {
+            new CompilerDaemon(port, out).serve();
+            return 0;
         }
-        if (dotWeb) {
-            exportWeb(listing);
+        if (files == null || files.isEmpty()) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required parameter: '<files>'");
         }
-
-
-        System.out.println("MIPS Assembly:");
-        RegisterAllocator regAlloc;
-        if (rallocMode == RegisterAllocationMode.BRIGGS) {
-            regAlloc = new BriggsRegisterAllocator();
-        } else {
-            regAlloc = new NaiveRegisterAllocator();
+        // spim runs attached to the console and watch mode never returns, so both always compile in-process
+        if (connect && !runSPIM && !watch) {
+            List<String> args = new ArrayList<>(spec.commandLine().getParseResult().originalArgs());
+            args.remove("--connect");
+            Integer exitCode = CompilerDaemon.request(port, args, out);
+            if (exitCode != null) {
+                return exitCode;
+            }
+        }
+        if (workingDirectory != null) {
+            files.replaceAll(workingDirectory::resolve);
+            if (outFile != null) {
+                outFile = workingDirectory.resolve(outFile);
+            }
+            if (cacheDirectory != null) {
+                cacheDirectory = workingDirectory.resolve(cacheDirectory);
+            }
+            if (irFile != null) {
+                irFile = workingDirectory.resolve(irFile);
+            }
+            // the daemon runs requests under its owner's account, so they may not reach outside the owner's home
+            List<Path> paths = new ArrayList<>(files);
+            paths.addAll(Arrays.asList(outFile, cacheDirectory, irFile));
+            for (Path path : paths) {
+                if (path != null && !isInHome(path)) {
+                    out.println("Invalid path: " + path + " is outside of the home directory");
+                    return -1;
+                }
+            }
+        }
+        if (files.size() > 1 || Files.isDirectory(files.get(0))) {
+            return compileBatch();
+        }
+        if (watch) {
+            return watch();
         }
-        String code = new MIPSCodeGenerator(listing, regAlloc).call();
-        System.out.print(code);
 
-        if (outFile != null) {
-            Files.writeString(outFile, code);
+        if (outFile == null && runSPIM) {
+            outFile = Files.createTempFile(null, null);
+        }
+        CompileResult result = compileSingle(new TigerCompiler(compilerOptions(out)), null);
+        if (!result.isSuccess()) {
+            return -1;
         }
 
         if (runSPIM) {
-            System.out.println("\nStarting SPIM simulator");
-            if (outFile == null) {
-                outFile = Files.createTempFile(null, null);
-                Files.writeString(outFile, code);
-            }
+            out.println("\nStarting SPIM simulator");
             ProcessBuilder pb = new ProcessBuilder("spim", "-file", outFile.toString());
             pb.inheritIO();
             pb.start().waitFor();
@@ -186,82 +174,237 @@ public class Main implements Callable<Integer> {
         return 0;
     }
 
-    private void exportWeb(IRListing listing) {
-        ComponentNameProvider<Web> vertexIdProvider = new IntegerComponentNameProvider<>();
-        ComponentNameProvider<Web> vertexLabelProvider = new StringComponentNameProvider<>();
-        GraphExporter<Web, DefaultEdge> exporter = new DOTExporter<>(vertexIdProvider, vertexLabelProvider, null, null, null);
-        listing.getFunctions().forEach(function -> {
-            Path path = file.resolveSibling("web." + function.getName() + ".dot");
-            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-                exporter.exportGraph(function.getColoredGraph(), writer);
-                System.out.println("web saved to " + path.toString());
-            } catch (IOException | ExportException e) {
-                e.printStackTrace();
+    // compiles the file, or source in its place if given
+    private CompileResult compileSingle(TigerCompiler compiler, String source) throws IOException {
+        Path file = files.get(0);
+        CompileResult result;
+        if (outFile != null) {
+            result = source != null ? compiler.compile(source, file.toString(), outFile) : compiler.compile(file, outFile);
+        } else {
+            result = source != null ? compiler.compile(source, file.toString()) : compiler.compile(file);
+            if (result.isSuccess()) {
+                out.println("MIPS Assembly:");
+                out.print(result.getAssembly());
             }
-        });
-        System.out.println();
+        }
+        if (!result.isSuccess()) {
+            out.println(result.getFailure());
+        }
+        return result;
+    }
+
+    // recompiles the file whenever its directory reports a change to it, until interrupted. Every compilation shares
+    // one function cache, so functions whose IR did not change skip coloring and code generation.
+    private int watch() throws IOException, InterruptedException {
+        if (runSPIM) {
+            out.println("Invalid flag: --run cannot be used with --watch");
+            return -1;
+        }
+        if (TigerCompiler.isBinaryIR(files.get(0))) {
+            out.println("Invalid flag: --watch cannot be used with binary IR files");
+            return -1;
+        }
+        Path file = files.get(0).toAbsolutePath();
+        CompilerOptions options = compilerOptions(out);
+        if (options.getFunctionCache() == null) {
+            options.setFunctionCache(new MemoryFunctionCache());
+        }
+        TigerCompiler compiler = new TigerCompiler(options);
+
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            // editors often save by replacing the file, which shows up as a create
+            file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            String source = null;
+            do {
+                // the file may vanish or be half written while an editor saves it, so errors only skip this change
+                long start;
+                CompileResult result;
+                try {
+                    String changed = Files.exists(file) ? Files.readString(file) : null;
+                    if (changed == null || changed.equals(source)) {
+                        continue;
+                    }
+                    source = changed;
+                    start = System.nanoTime();
+                    result = compileSingle(compiler, source);
+                } catch (IOException e) {
+                    source = null;      // compile it again on the next change, even if the text is the same
+                    out.println("[watch] cannot compile " + file + ": " + e);
+                    out.println("[watch] waiting for changes to " + file);
+                    continue;
+                }
+                double millis = (System.nanoTime() - start) / 1e6;
+                String phases = result.getTimings().entrySet().stream()
+                        .map(e -> String.format("%s %.1f", e.getKey(), e.getValue().toNanos() / 1e6))
+                        .collect(Collectors.joining(", "));
+                if (result.getListing() != null) {
+                    out.println(String.format("[watch] compiled in %.1f ms (%s), reused %d of %d functions", millis,
+                            phases, result.getCachedFunctions(), result.getListing().getFunctions().size()));
+                } else {
+                    out.println(String.format("[watch] failed in %.1f ms (%s)", millis, phases));
+                }
+                out.println("[watch] waiting for changes to " + file);
+            } while (awaitChange(watcher, file.getFileName()));
+        }
+        return 0;
     }
 
-    private void exportCfg(IRListing listing) {
-        ComponentNameProvider<BasicBlock> vertexIdProvider = new IntegerComponentNameProvider<>();
-        ComponentNameProvider<BasicBlock> vertexLabelProvider = new StringComponentNameProvider<>();
-        ComponentAttributeProvider<BasicBlock> vertexAttributeProvider = component -> Map.of("shape", new DefaultAttribute<>("Mrecord", AttributeType.STRING));
-        GraphExporter<BasicBlock, DefaultEdge> exporter = new DOTExporter<>(vertexIdProvider, vertexLabelProvider, null, vertexAttributeProvider, null);
-
-        listing.getFunctions().forEach(function -> {
-            Path path = file.resolveSibling("cfg." + function.getName() + ".dot");
-            try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-                exporter.exportGraph(function.getCfg(), writer);
-                System.out.println("cfg saved to " + path.toString());
-            } catch (IOException | ExportException e) {
-                e.printStackTrace();
+    // blocks until an event for the file arrives, then until the burst of events of one save has passed;
+    // returns false once the directory can no longer be watched
+    private static boolean awaitChange(WatchService watcher, Path fileName) throws InterruptedException {
+        boolean changed = false;
+        WatchKey key = watcher.take();
+        while (true) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
             }
-        });
-        System.out.println();
+            if (!key.reset()) {
+                return false;
+            }
+            if (changed) {
+                key = watcher.poll(WATCH_SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    return true;
+                }
+            } else {
+                key = watcher.take();
+            }
+        }
     }
 
-    private void printSemanticError(SemanticException e, CommonTokenStream stream) {
-        Token token = stream.get(e.getToken().getSourceInterval().a);
-        printError(token.getLine(), token.getCharPositionInLine(), e.getMessage());
+    // whether path, with symbolic links resolved as far as it exists, is in the home directory of this process' user
+    static boolean isInHome(Path path) throws IOException {
+        Path home = Paths.get(System.getProperty("user.home")).toRealPath();
+        Path absolute = path.toAbsolutePath().normalize();
+        Path existing = absolute;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return false;
+        }
+        return existing.toRealPath().resolve(existing.relativize(absolute)).startsWith(home);
     }
 
-    private void printError(int line, int index, String message) {
-        System.out.println("Error: line " + line + ":" + index + ": " + message);
+    private int compileBatch() throws IOException, InterruptedException {
+        if (outFile != null || runSPIM || irFile != null) {
+            out.println("Invalid flag: --out, --run and --emit-ir cannot be used in batch mode");
+            return -1;
+        }
 
-        try (Stream<String> lines = Files.lines(file)) {
-            lines.skip(line - 1).findFirst().ifPresent(s -> {
-                System.out.println(s.stripTrailing());
-                System.out.println(s.substring(0, index).replaceAll("\\S", " ") + "^");
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
+        List<Path> sources = new ArrayList<>();
+        for (Path path : files) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(p -> p.toString().endsWith(".tiger")).sorted().forEach(sources::add);
+                }
+            } else {
+                sources.add(path);
+            }
+        }
+        if (workingDirectory != null) {
+            for (Path source : sources) {
+                if (!isInHome(source)) {
+                    out.println("Invalid path: " + source + " is outside of the home directory");
+                    return -1;
+                }
+            }
+        }
+
+        // each file compiles into its own log buffer; results are reported in input order
+        CompilerOptions options = compilerOptions(null);
+        int workers = Math.max(1, jobs);
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<BatchResult>> futures = new ArrayList<>();
+        for (Path source : sources) {
+            futures.add(pool.submit(() -> compileToSibling(options, source)));
+        }
+        pool.shutdown();
+
+        boolean showLogs = verbosity.length > 0 || printTokens || printSymtab;
+        int failed = 0;
+        long bytes = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            BatchResult result;
+            try {
+                result = futures.get(i).get();
+            } catch (ExecutionException e) {
+                result = new BatchResult(null, "internal error: " + e.getCause(), "");
+            }
+            bytes += result.bytes;
+            if (result.error == null) {
+                out.println(sources.get(i) + ": ok -> " + result.asmFile);
+            } else {
+                failed++;
+                out.println(sources.get(i) + ": " + result.error);
+            }
+            if (showLogs || result.error != null) {
+                out.print(result.log);
+            }
         }
-    }
 
-    static class TigerDebugListener extends TigerParserBaseListener {
-        List<TerminalNode> nodes = new ArrayList<>();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.println(String.format("compiled %d files (%d failed) in %.3f s with %d workers: %.1f files/s, %.1f KB/s",
+                sources.size(), failed, seconds, workers, sources.size() / seconds, bytes / 1024.0 / seconds));
+        return failed == 0 ? 0 : 1;
+    }
 
-        @Override
-        public void visitTerminal(TerminalNode node) {
-            nodes.add(node);
+    private BatchResult compileToSibling(CompilerOptions batchOptions, Path source) {
+        Path asmFile = source.resolveSibling(source.getFileName().toString().replaceFirst("\\.(tiger|irb?)$", "") + ".s");
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        CompilerOptions options = batchOptions.withLog(new PrintStream(log, true));
+        BatchResult result;
+        try {
+            CompileResult compiled = new TigerCompiler(options).compile(source, asmFile);
+            if (compiled.isSuccess()) {
+                result = new BatchResult(asmFile, null, log.toString());
+            } else {
+                result = new BatchResult(null, compiled.getFailure(), log.toString());
+            }
+        } catch (IOException | RuntimeException e) {
+            result = new BatchResult(null, "internal error: " + e, log.toString());
+        }
+        try {
+            result.bytes = Files.size(source);
+        } catch (IOException ignored) {
         }
+        return result;
     }
 
-    class TigerErrorListener extends BaseErrorListener {
-        boolean hasError;
+    static class BatchResult {
+        Path asmFile;
+        String error;
+        String log;
+        long bytes;
 
-        @Override
-        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
-            hasError = true;
-            printError(line, charPositionInLine, msg);
+        BatchResult(Path asmFile, String error, String log) {
+            this.asmFile = asmFile;
+            this.error = error;
+            this.log = log;
         }
     }
 
-    enum RegisterAllocationMode {
-        BRIGGS, NAIVE
+    private CompilerOptions compilerOptions(PrintStream log) {
+        CompilerOptions options = new CompilerOptions();
+        options.setPrintTokens(printTokens);
+        options.setPrintSymtab(printSymtab);
+        options.setDotCfg(dotCfg);
+        options.setDotWeb(dotWeb);
+        options.setCfgLiveness(cfgLiveness);
+        options.setCompactLiveness(compactLiveness);
+        Diagnostics.Level[] levels = Diagnostics.Level.values();
+        options.setDebugLevel(levels[Math.min(verbosity.length, levels.length - 1)]);
+        options.setRegisterAllocation(rallocMode);
+        options.setLog(log);
+        options.setIrOutput(irFile);
+        if (cacheDirectory != null) {
+            options.setFunctionCache(new DiskFunctionCache(cacheDirectory, cacheSize * 1024 * 1024));
+        }
+        return options;
     }
 
     public static void main(String[] args) {
-        new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
+        System.exit(new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args));
     }
 }
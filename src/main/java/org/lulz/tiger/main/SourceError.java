@@ -0,0 +1,31 @@
+package org.lulz.tiger.main;
+
+// A scanner, parser or semantic error at a position in the source
+public class SourceError {
+    private int line;
+    private int column;
+    private String message;
+
+    public SourceError(int line, int column, String message) {
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + line + ":" + column + ": " + message;
+    }
+}
@@ -0,0 +1,425 @@
+package org.lulz.tiger.main;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.lulz.tiger.antlr.TigerLexer;
+import org.lulz.tiger.antlr.TigerParser;
+import org.lulz.tiger.antlr.TigerParserBaseListener;
+import org.lulz.tiger.backend.cache.CacheSession;
+import org.lulz.tiger.backend.cfg.ControlFlowAnalyzer;
+import org.lulz.tiger.backend.codegen.BriggsRegisterAllocator;
+import org.lulz.tiger.backend.codegen.MIPSCodeGenerator;
+import org.lulz.tiger.backend.codegen.NaiveRegisterAllocator;
+import org.lulz.tiger.backend.codegen.RegisterAllocator;
+import org.lulz.tiger.backend.liveness.LivenessAnalyzer;
+import org.lulz.tiger.common.Decoration;
+import org.lulz.tiger.common.Diagnostics;
+import org.lulz.tiger.common.ir.IRBinary;
+import org.lulz.tiger.common.ir.IRListing;
+import org.lulz.tiger.common.ir.IRParser;
+import org.lulz.tiger.common.ir.IRSyntaxException;
+import org.lulz.tiger.common.symbol.SymbolTable;
+import org.lulz.tiger.common.type.TypeManager;
+import org.lulz.tiger.frontend.MappedCharStream;
+import org.lulz.tiger.frontend.SemanticException;
+import org.lulz.tiger.frontend.ast.FunctionDecl;
+import org.lulz.tiger.frontend.irgen.IRGenVisitor;
+import org.lulz.tiger.frontend.semantic.SemanticAnalyzer;
+import org.lulz.tiger.frontend.symbol.SymbolListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Compiles Tiger programs to MIPS assembly. Every call is independent, so one instance can be reused and shared
+// between threads. Errors are reported in the result, never by exiting.
+public class TigerCompiler {
+    // smaller files are read into memory, as mapping them costs more than it saves
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    private CompilerOptions options;
+
+    public TigerCompiler(CompilerOptions options) {
+        this.options = options;
+    }
+
+    public CompileResult compile(Path file) throws IOException {
+        return open(file).run(null, null);
+    }
+
+    // streams the assembly into assemblyFile instead of keeping it in the result; the file is only created
+    // once the program has compiled without errors
+    public CompileResult compile(Path file, Path assemblyFile) throws IOException {
+        return open(file).run(null, assemblyFile);
+    }
+
+    // sourceName is used in messages and to place exported dot files; a source named *.ir is read as IR text. Binary
+    // IR cannot be passed as a string, so names ending in .irb are rejected; compile the file instead.
+    public CompileResult compile(String source, String sourceName) throws IOException {
+        return new Compilation(source, textSource(sourceName)).run(null, null);
+    }
+
+    // streams the assembly to the writer instead of keeping it in the result
+    public CompileResult compile(String source, String sourceName, Writer assembly) throws IOException {
+        return new Compilation(source, textSource(sourceName)).run(assembly, null);
+    }
+
+    // streams the assembly into assemblyFile, which is only created once the program has compiled without errors
+    public CompileResult compile(String source, String sourceName, Path assemblyFile) throws IOException {
+        return new Compilation(source, textSource(sourceName)).run(null, assemblyFile);
+    }
+
+    private static Path textSource(String sourceName) {
+        Path file = Paths.get(sourceName);
+        if (isBinaryIR(file)) {
+            throw new IllegalArgumentException("binary IR must be compiled from its file: " + sourceName);
+        }
+        return file;
+    }
+
+    private Compilation open(Path file) throws IOException {
+        if (isBinaryIR(file)) {
+            return new Compilation(null, null, file);
+        } else if (isIR(file)) {
+            return new Compilation(null, Files.readString(file), file);
+        }
+        if (Files.size(file) >= MAP_THRESHOLD) {
+            MappedCharStream mapped = MappedCharStream.open(file);
+            if (mapped != null) {
+                return new Compilation(mapped, null, file);
+            }
+        }
+        return new Compilation(null, Files.readString(file), file);
+    }
+
+    // IR files skip the front end, and are compiled by the back end alone
+    private static boolean isIR(Path file) {
+        return file.getFileName().toString().endsWith(".ir");
+    }
+
+    static boolean isBinaryIR(Path file) {
+        return file.getFileName().toString().endsWith(".irb");
+    }
+
+    private class Compilation {
+        private MappedCharStream mapped;
+        private String source;
+        private Path file;
+        private PrintStream out;
+        private Diagnostics diagnostics;
+        private CompileResult result = new CompileResult();
+
+        Compilation(String source, Path file) {
+            this(null, source, file);
+        }
+
+        // exactly one of mapped and source is given, or neither for a binary IR file
+        Compilation(MappedCharStream mapped, String source, Path file) {
+            this.mapped = mapped;
+            this.source = source;
+            this.file = file;
+            this.out = options.getLog() != null ? options.getLog() : new PrintStream(OutputStream.nullOutputStream());
+            this.diagnostics = new Diagnostics(options.getDebugLevel(), out);
+        }
+
+        CompileResult run(Writer assembly, Path assemblyFile) throws IOException {
+            IRListing listing = isIR(file) || isBinaryIR(file) ? readIR() : generateIR();
+            if (listing == null) {
+                return result;
+            }
+            result.setListing(listing);
+            diagnostics.println(Diagnostics.Level.INFO, listing::toString);
+            if (options.getIrOutput() != null) {
+                writeIR(listing, options.getIrOutput());
+            }
+
+            diagnostics.println(Diagnostics.Level.INFO, "successful compile\n");
+
+            long start = System.nanoTime();
+            new ControlFlowAnalyzer(listing).run();
+            result.addTiming("cfg", start);
+            if (options.isDotCfg() && !options.isCfgLiveness()) {   // export cfg without live sets
+                DotExport.exportCfg(listing, file, out);
+            }
+            // web export needs every function's colored graph, so it bypasses the cache
+            CacheSession cache = null;
+            if (options.getFunctionCache() != null && !options.isDotWeb()) {
+                cache = new CacheSession(options.getFunctionCache(), options.getRegisterAllocation().name());
+            }
+
+            start = System.nanoTime();
+            LivenessAnalyzer livenessAnalyzer = new LivenessAnalyzer(listing, options.isCompactLiveness(), diagnostics);
+            livenessAnalyzer.setCache(cache);
+            livenessAnalyzer.run();
+            result.addTiming("liveness", start);
+            if (options.isDotCfg() && options.isCfgLiveness()) {    // export cfg with live sets
+                DotExport.exportCfg(listing, file, out);
+            }
+            if (options.isDotWeb()) {
+                DotExport.exportWeb(listing, file, out);
+            }
+
+            start = System.nanoTime();
+            RegisterAllocator regAlloc;
+            if (options.getRegisterAllocation() == CompilerOptions.RegisterAllocation.BRIGGS) {
+                regAlloc = new BriggsRegisterAllocator();
+            } else {
+                regAlloc = new NaiveRegisterAllocator();
+            }
+            MIPSCodeGenerator codeGenerator = new MIPSCodeGenerator(listing, regAlloc);
+            codeGenerator.setCache(cache);
+            if (assemblyFile != null) {
+                try (Writer writer = Files.newBufferedWriter(assemblyFile)) {
+                    codeGenerator.write(writer);
+                }
+            } else if (assembly != null) {
+                codeGenerator.write(assembly);
+                assembly.flush();
+            } else {
+                StringWriter writer = new StringWriter();
+                codeGenerator.write(writer);
+                result.setAssembly(writer.toString());
+            }
+            result.addTiming("codegen", start);
+            if (cache != null) {
+                cache.getCache().trim();
+                result.setCachedFunctions(cache.getHits());
+                out.println("function cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses");
+            }
+            return result;
+        }
+
+        private IRListing generateIR() {
+            SymbolTable symtab = new SymbolTable();
+            TypeManager typeManager = new TypeManager();
+            FunctionDecl program = frontEnd(symtab, typeManager);
+            if (program == null) {
+                return null;
+            }
+
+            long start = System.nanoTime();
+            IRGenVisitor irVisitor = new IRGenVisitor(symtab, typeManager);
+            irVisitor.visitProgram(program);
+            result.addTiming("irgen", start);
+            return irVisitor.getListing();
+        }
+
+        // reads the listing of an IR file, or returns null after reporting an error in it
+        private IRListing readIR() throws IOException {
+            long start = System.nanoTime();
+            IRListing listing;
+            if (source == null) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    listing = IRBinary.read(in);
+                } catch (IRSyntaxException e) {
+                    // binary IR has no lines to point at
+                    result.addError(new SourceError(0, 0, e.getMessage()));
+                    out.println("Error: " + file + ": " + e.getMessage());
+                    fail("stopped due to IR error");
+                    return null;
+                }
+            } else {
+                try {
+                    listing = IRParser.parse(source);
+                } catch (IRSyntaxException e) {
+                    error(e.getLine(), 0, e.getMessage());
+                    fail("stopped due to IR error");
+                    return null;
+                }
+            }
+            result.addTiming("irread", start);
+            return listing;
+        }
+
+        private void writeIR(IRListing listing, Path irFile) throws IOException {
+            if (isBinaryIR(irFile)) {
+                try (OutputStream irOut = Files.newOutputStream(irFile)) {
+                    IRBinary.write(listing, irOut);
+                }
+            } else {
+                Files.writeString(irFile, listing.toString() + "\n");
+            }
+            out.println("IR saved to " + irFile);
+        }
+
+        // scans, parses and checks the source, and returns its AST, or null after reporting errors. The parse tree and
+        // tokens are only reachable from here, so they can be collected once the AST is built.
+        private FunctionDecl frontEnd(SymbolTable symtab, TypeManager typeManager) {
+            long start = System.nanoTime();
+            CharStream input = mapped != null ? mapped : CharStreams.fromString(source, file.toString());
+            TigerLexer lexer = new TigerLexer(input);
+            TigerErrorListener scannerErrors = new TigerErrorListener(false);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(scannerErrors);
+
+            Supplier<TokenStream> tokens;
+            if (options.isPrintTokens()) {
+                // the token dump needs every token, so the input is scanned in full before parsing
+                CommonTokenStream commonTokenStream = new CommonTokenStream(lexer);
+                commonTokenStream.fill();
+                result.addTiming("scan", start);
+                if (scannerErrors.hasError) {
+                    fail("stopped due to scanner error");
+                    return null;
+                }
+                out.println("[debug] scanner token stream:");
+                commonTokenStream.getTokens().stream().map(t ->
+                        "< " + lexer.getVocabulary().getSymbolicName(t.getType()) + ", " + t.getText() + " >")
+                        .forEach(out::println);
+                tokens = () -> {
+                    commonTokenStream.seek(0);
+                    return commonTokenStream;
+                };
+            } else {
+                // tokens are scanned as the parser consumes them and only kept while it looks ahead or in the tree
+                tokens = () -> {
+                    lexer.reset();
+                    return new UnbufferedTokenStream<>(lexer);
+                };
+            }
+
+            // parsing
+            start = System.nanoTime();
+            TigerParser parser = new TigerParser(null);
+            parser.removeErrorListeners();
+            parser.setTrimParseTree(true);      // the tree is most of the front end's memory
+            TigerErrorListener parserErrors = new TigerErrorListener(true);
+            TigerParser.TigerProgramContext programContext = parse(parser, tokens, scannerErrors, parserErrors);
+
+            // scanner errors anywhere in the input take precedence over syntax errors, so scan what the parser left
+            TokenStream rest = parser.getTokenStream();
+            while (rest.LA(1) != Token.EOF) {
+                rest.consume();
+            }
+            result.addTiming("parse", start);
+
+            if (scannerErrors.hasError) {
+                fail("stopped due to scanner error");
+                return null;
+            }
+            if (parserErrors.hasError) {
+                parserErrors.flush();
+                fail("stopped due to parser error");
+                return null;
+            }
+            if (options.isPrintTokens()) {
+                TigerDebugListener listener = new TigerDebugListener();
+                new ParseTreeWalker().walk(listener, programContext);
+                out.println("[debug] parser token stream:");
+                out.println(listener.nodes.stream()
+                        .map(node -> lexer.getVocabulary().getSymbolicName(node.getSymbol().getType()))
+                        .collect(Collectors.joining(" ")));
+            }
+            diagnostics.println(Diagnostics.Level.INFO, "successful parse");
+
+            // semantic analysis
+            try {
+                start = System.nanoTime();
+                Decoration decoration = new Decoration();
+                new ParseTreeWalker().walk(new SymbolListener(symtab, typeManager, decoration), programContext);
+
+                if (options.isPrintSymtab()) {
+                    out.println("[debug] symbol table:");
+                    out.println(symtab);
+                }
+
+                FunctionDecl program = new SemanticAnalyzer(programContext, symtab, typeManager, decoration).analyze();
+                result.addTiming("semantic", start);
+                return program;
+            } catch (SemanticException e) {
+                Token token = e.getToken() instanceof TerminalNode ? ((TerminalNode) e.getToken()).getSymbol()
+                        : ((ParserRuleContext) e.getToken()).getStart();
+                error(token.getLine(), token.getCharPositionInLine(), e.getMessage());
+                fail("stopped due to semantic error");
+                return null;
+            }
+        }
+
+        // SLL prediction is much cheaper on the left-recursive expr rule and parses nearly every valid program. It
+        // bails out on the first syntax error without reporting, and only then is the input parsed again with full LL
+        // and the real error listener, so diagnostics are those of an LL parse. A scanner error ends the parse, as
+        // it fails the compilation anyway. Returns null if the parse was abandoned.
+        private TigerParser.TigerProgramContext parse(TigerParser parser, Supplier<TokenStream> tokens,
+                                                      TigerErrorListener scannerErrors,
+                                                      TigerErrorListener parserErrors) {
+            parser.setTokenStream(tokens.get());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                return parser.tigerProgram();
+            } catch (ParseCancellationException e) {
+                if (scannerErrors.hasError) {
+                    return null;
+                }
+                parser.setTokenStream(tokens.get());
+                parser.addErrorListener(parserErrors);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                return parser.tigerProgram();
+            }
+        }
+
+        private CompileResult fail(String failure) {
+            result.setFailure(failure);
+            return result;
+        }
+
+        private void error(int line, int index, String message) {
+            result.addError(new SourceError(line, index, message));
+            out.println("Error: line " + line + ":" + index + ": " + message);
+
+            String s = mapped != null ? mapped.getLine(line) : source.lines().skip(line - 1).findFirst().orElse(null);
+            if (s != null) {
+                out.println(s.stripTrailing());
+                out.println(s.substring(0, Math.min(index, s.length())).replaceAll("\\S", " ") + "^");
+            }
+        }
+
+        class TigerErrorListener extends BaseErrorListener {
+            boolean hasError;
+            private List<SourceError> deferred;
+
+            // deferred errors are only reported on flush()
+            TigerErrorListener(boolean defer) {
+                deferred = defer ? new ArrayList<>() : null;
+            }
+
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                hasError = true;
+                if (deferred != null) {
+                    deferred.add(new SourceError(line, charPositionInLine, msg));
+                } else {
+                    error(line, charPositionInLine, msg);
+                }
+            }
+
+            void flush() {
+                deferred.forEach(error -> error(error.getLine(), error.getColumn(), error.getMessage()));
+                deferred.clear();
+            }
+        }
+    }
+
+    static class TigerDebugListener extends TigerParserBaseListener {
+        List<TerminalNode> nodes = new ArrayList<>();
+
+        @Override
+        public void visitTerminal(TerminalNode node) {
+            nodes.add(node);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.lulz.tiger.backend.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class DiskFunctionCacheTest {
+    private static final String TEN_BYTES = "add $t0\n#1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storesThroughTemporaryFiles() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        DiskFunctionCache cache = new DiskFunctionCache(directory, 1024);
+
+        assertNull(cache.load("ab01"));
+        cache.store("ab01", TEN_BYTES);
+        cache.store("ab01", TEN_BYTES + "\n");
+        cache.store("cd02", TEN_BYTES);
+
+        // entries fan out by their first two characters, and no temporary file is left behind
+        assertEquals(TEN_BYTES + "\n", Files.readString(directory.resolve("ab").resolve("ab01.s")));
+        assertEquals(TEN_BYTES, cache.load("cd02"));
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertEquals(0, files.filter(p -> p.toString().endsWith(".part")).count());
+        }
+
+        // a second cache on the same directory sees the entries
+        assertEquals(TEN_BYTES + "\n", new DiskFunctionCache(directory, 1024).load("ab01"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFirst() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DiskFunctionCache cache = new DiskFunctionCache(directory, 25);
+        cache.store("aa01", TEN_BYTES);
+        cache.store("bb02", TEN_BYTES);
+        cache.store("cc03", TEN_BYTES);
+        touch(directory, "aa01", 1000);
+        touch(directory, "bb02", 2000);
+        touch(directory, "cc03", 3000);
+
+        // reading the oldest entry makes it the most recently used
+        assertEquals(TEN_BYTES, cache.load("aa01"));
+        cache.trim();
+
+        assertNull(cache.load("bb02"));
+        assertEquals(TEN_BYTES, cache.load("aa01"));
+        assertEquals(TEN_BYTES, cache.load("cc03"));
+    }
+
+    @Test
+    public void keepsRunningSizeUnderCap() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        DiskFunctionCache cache = new DiskFunctionCache(directory, 25);
+        cache.store("aa01", TEN_BYTES);
+        cache.store("bb02", TEN_BYTES);
+        cache.trim();
+        assertEquals("20", readSize(directory));
+
+        // stores in another process that push the running size over the cap evict down to it
+        DiskFunctionCache other = new DiskFunctionCache(directory, 25);
+        other.store("cc03", TEN_BYTES);
+        other.store("dd04", TEN_BYTES);
+        other.trim();
+        assertEquals(2, Stream.of("aa01", "bb02", "cc03", "dd04").filter(key -> other.load(key) != null).count());
+        assertEquals("20", readSize(directory));
+
+        // under the cap, trim() only adds to the running size and does not recount the entries
+        Files.writeString(directory.resolve("size"), "0");
+        cache.store("ee05", TEN_BYTES);
+        cache.trim();
+        assertEquals(3, Stream.of("aa01", "bb02", "cc03", "dd04", "ee05").filter(key -> cache.load(key) != null).count());
+        assertEquals("10", readSize(directory));
+    }
+
+    private static String readSize(Path directory) throws IOException {
+        return Files.readString(directory.resolve("size"), StandardCharsets.UTF_8);
+    }
+
+    private static void touch(Path directory, String key, long millis) throws IOException {
+        Files.setLastModifiedTime(directory.resolve(key.substring(0, 2)).resolve(key + ".s"), FileTime.fromMillis(millis));
+    }
+}
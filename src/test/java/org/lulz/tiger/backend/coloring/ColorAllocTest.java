@@ -1,16 +1,15 @@
 package org.lulz.tiger.backend.coloring;
 
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.lulz.tiger.backend.liveness.InterferenceGraph;
 import org.lulz.tiger.backend.liveness.Web;
 
 import java.util.*;
 
 public class ColorAllocTest {
     RegColoring rc;
-    SimpleGraph<Web, DefaultEdge> originalGraph;
+    InterferenceGraph originalGraph;
     HashMap<Web, Integer> debugWeb;
     //int N = 4;
     //int N = 3;
@@ -96,24 +95,23 @@ public class ColorAllocTest {
         return hm;
     }
 
-    public SimpleGraph<Web, DefaultEdge> ListToGraphConverter(ArrayList<LinkedList<Integer>> l, HashMap<Integer, Integer> spillCost) {
+    public InterferenceGraph ListToGraphConverter(ArrayList<LinkedList<Integer>> l, HashMap<Integer, Integer> spillCost) {
         debugWeb = new HashMap<>();
-        SimpleGraph<Web, DefaultEdge> g = new SimpleGraph<>(DefaultEdge.class);
         ArrayList<Web> vertices = new ArrayList<>();
 
         spillCost.keySet().forEach(k -> {
             Web v = new Web(null,null);
             v.setSpillCost(spillCost.get(k));
             vertices.add(v);
-            g.addVertex(v);
             debugWeb.put(v, k);
         });
+        InterferenceGraph g = new InterferenceGraph(vertices);
 
         for (int v = 0; v < l.size(); v++) {
             Web v1 = vertices.get(v);
             l.get(v).forEach(i -> {
                 Web v2 = vertices.get(i);
-                if (!g.containsEdge(v1, v2)) {
+                if (!g.containsEdge(v1.getId(), v2.getId())) {
                     g.addEdge(v1, v2);
                 }
             });
@@ -121,6 +119,14 @@ public class ColorAllocTest {
         return g;
     }
 
+    private int[] degrees(InterferenceGraph g) {
+        int[] degree = new int[g.size()];
+        for (int v = 0; v < g.size(); v++) {
+            degree[v] = g.degreeOf(v);
+        }
+        return degree;
+    }
+
     @Before
     public void setup() {
         originalGraph = ListToGraphConverter(g, sc);
@@ -132,20 +138,20 @@ public class ColorAllocTest {
         rc.run();
 
         System.out.println("Color Nodes: ");
-        originalGraph.vertexSet().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
+        originalGraph.getWebs().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
                 .forEach(v -> System.out.println(debugWeb.get(v) + ": " + v.getColor()));
 
         System.out.println("Spilled Nodes: ");
-        originalGraph.vertexSet().stream().filter(v -> v.getColor() == RegColoring.NO_COLOR)
+        originalGraph.getWebs().stream().filter(v -> v.getColor() == RegColoring.NO_COLOR)
                 .forEach(v -> System.out.println(debugWeb.get(v)));
     }
 
     @Test
     public void testPushToStack() {
-        Stack<Web> st = rc.pushToStack(originalGraph);
+        int[] st = rc.pushToStack(new boolean[originalGraph.size()], degrees(originalGraph));
         System.out.println("stack top");
-        while (!st.empty()) {
-            Web v = st.pop();
+        for (int top = st.length - 1; top >= 0; top--) {
+            Web v = originalGraph.getWeb(st[top]);
             System.out.println(debugWeb.get(v) + ": " + v.getColor());
         }
         System.out.println("stack bottom");
@@ -153,15 +159,16 @@ public class ColorAllocTest {
 
     @Test
     public void testTryColoring() {
-        Stack<Web> st = rc.pushToStack(originalGraph);
+        int[] st = rc.pushToStack(new boolean[originalGraph.size()], degrees(originalGraph));
         System.out.println("Stack: bottom");
-        st.forEach(v -> System.out.println(debugWeb.get(v) + ": " + v.getColor()));
+        Arrays.stream(st).mapToObj(originalGraph::getWeb).forEach(v -> System.out.println(debugWeb.get(v) + ": " + v.getColor()));
         System.out.println("Stack: top");
 
-        Web spillNode = rc.tryColoring(st);
+        int spillId = rc.tryColoring(st);
+        Web spillNode = spillId == RegColoring.NO_COLOR ? null : originalGraph.getWeb(spillId);
 
         System.out.println("Color: ");
-        originalGraph.vertexSet().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
+        originalGraph.getWebs().stream().filter(v -> v.getColor() != RegColoring.NO_COLOR)
                 .forEach(v -> System.out.println("v: " + debugWeb.get(v) + " , c: " + v.getColor()));
         System.out.println("spill node: " + debugWeb.get(spillNode));
     }
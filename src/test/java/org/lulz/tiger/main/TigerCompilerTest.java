@@ -0,0 +1,190 @@
+package org.lulz.tiger.main;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lulz.tiger.backend.cache.DiskFunctionCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TigerCompilerTest {
+    private static final String FACTORIAL = String.join("\n",
+            "main let",
+            "  var r: int := 1;",
+            "  function fact(n: int): int",
+            "  begin",
+            "    if n == 1 then return 1; endif;",
+            "    r := fact(n - 1);",
+            "    return n * r;",
+            "  end;",
+            "in",
+            "begin",
+            "  r := fact(5);",
+            "  r := printi(r);",
+            "end");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compilesToAssembly() throws IOException {
+        TigerCompiler compiler = new TigerCompiler(new CompilerOptions());
+        CompileResult result = compiler.compile(FACTORIAL, "factorial.tiger");
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(2, result.getListing().getFunctions().size());
+        assertTrue(result.getAssembly().contains("fact:"));
+        assertTrue(result.getTimings().containsKey("codegen"));
+
+        // the same compiler can be used again and produces the same code
+        assertEquals(result.getAssembly(), compiler.compile(FACTORIAL, "factorial.tiger").getAssembly());
+    }
+
+    @Test
+    public void reportsSemanticErrors() throws IOException {
+        TigerCompiler compiler = new TigerCompiler(new CompilerOptions());
+        CompileResult result = compiler.compile(FACTORIAL.replace("r := printi(r);", "r := printi(1.5);"), "bad.tiger");
+
+        assertFalse(result.isSuccess());
+        assertEquals("stopped due to semantic error", result.getFailure());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(12, result.getErrors().get(0).getLine());
+        assertNull(result.getAssembly());
+    }
+
+    @Test
+    public void compilesParenthesizedExpressions() throws IOException {
+        String source = FACTORIAL.replace("return n * r;", "return (n + 0) * (r - 0);");
+        CompileResult result = new TigerCompiler(new CompilerOptions()).compile(source, "parens.tiger");
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getListing().toString().contains("mul _t"));
+    }
+
+    @Test
+    public void compilesLargeFilesFromDisk() throws IOException {
+        // large enough to be memory mapped and scanned while parsing
+        String padding = "/*" + "x".repeat(1 << 20) + "*/\n";
+        Path file = folder.getRoot().toPath().resolve("large.tiger");
+        Files.writeString(file, padding + FACTORIAL);
+        TigerCompiler compiler = new TigerCompiler(new CompilerOptions());
+
+        assertEquals(compiler.compile(FACTORIAL, "factorial.tiger").getAssembly(), compiler.compile(file).getAssembly());
+
+        Files.writeString(file, padding + FACTORIAL.replace("return n * r;", "return n * * r;"));
+        CompileResult result = compiler.compile(file);
+        assertEquals("stopped due to parser error", result.getFailure());
+        assertEquals(8, result.getErrors().get(0).getLine());
+    }
+
+    @Test
+    public void compilesFromIR() throws IOException {
+        Path text = folder.getRoot().toPath().resolve("factorial.ir");
+        Path binary = folder.getRoot().toPath().resolve("factorial.irb");
+        CompilerOptions options = new CompilerOptions();
+        options.setIrOutput(text);
+        String expected = new TigerCompiler(options).compile(FACTORIAL, "factorial.tiger").getAssembly();
+        options.setIrOutput(binary);
+        new TigerCompiler(options).compile(FACTORIAL, "factorial.tiger");
+
+        TigerCompiler compiler = new TigerCompiler(new CompilerOptions());
+        assertEquals(expected, compiler.compile(text).getAssembly());
+        assertEquals(expected, compiler.compile(binary).getAssembly());
+
+        CompileResult result = compiler.compile(Files.readString(text).replace("mul ", "mult "), "bad.ir");
+        assertEquals("stopped due to IR error", result.getFailure());
+        assertTrue(result.getErrors().get(0).getMessage().contains("unknown opcode"));
+
+        byte[] bytes = Files.readAllBytes(binary);
+        Files.write(binary, Arrays.copyOf(bytes, bytes.length / 2));
+        assertEquals("stopped due to IR error", compiler.compile(binary).getFailure());
+    }
+
+    @Test
+    public void compilesSharedNamesFromIR() throws IOException {
+        String source = String.join("\n",
+                "main let",
+                "  var x: int := 7;",
+                "  var unused: int := 0;",
+                "  function f(n: int): int",
+                "  begin",
+                "    let var x: int := 0; in",
+                "      x := n + 1;",
+                "      n := printi(x);",
+                "    end;",
+                "    return x + n;",
+                "  end;",
+                "in",
+                "begin",
+                "  let var i: int := 1; in",
+                "    i := printi(i);",
+                "  end;",
+                "  let var i: int := 2; in",
+                "    i := f(3);",
+                "    i := printi(i);",
+                "  end;",
+                "end");
+        Path text = folder.getRoot().toPath().resolve("shadow.ir");
+        CompilerOptions options = new CompilerOptions();
+        options.setIrOutput(text);
+        String expected = new TigerCompiler(options).compile(source, "shadow.tiger").getAssembly();
+
+        assertEquals(expected, new TigerCompiler(new CompilerOptions()).compile(text).getAssembly());
+    }
+
+    @Test
+    public void reusesCachedFunctions() throws IOException {
+        CompilerOptions options = new CompilerOptions();
+        options.setFunctionCache(new DiskFunctionCache(folder.getRoot().toPath(), 1 << 20));
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        options.setLog(new PrintStream(log, true));
+        String expected = new TigerCompiler(new CompilerOptions()).compile(FACTORIAL, "factorial.tiger").getAssembly();
+
+        assertEquals(expected, new TigerCompiler(options).compile(FACTORIAL, "factorial.tiger").getAssembly());
+        assertTrue(log.toString().contains("function cache: 0 hits, 2 misses"));
+
+        // renaming a variable keeps the key, and cached code gets this compilation's labels
+        String renamed = FACTORIAL.replaceAll("\\br\\b", "result");
+        CompileResult result = new TigerCompiler(options).compile(renamed, "renamed.tiger");
+        assertTrue(log.toString().contains("function cache: 2 hits, 0 misses"));
+        assertEquals(new TigerCompiler(new CompilerOptions()).compile(renamed, "renamed.tiger").getAssembly(),
+                result.getAssembly());
+    }
+
+    @Test
+    public void cachedFunctionsMatchRenamedPrograms() throws IOException {
+        String source = String.join("\n",
+                "main let",
+                "  var g: int := 1;",
+                "  function f(n: int): int",
+                "  begin",
+                "    return n + g;",
+                "  end;",
+                "in",
+                "begin",
+                "  let var aa: int := 1; var bb: int := 2; var cc: int := 3; var dd: int := 4; in",
+                "    aa := f(aa);",
+                "    bb := f(bb);",
+                "    g := aa + bb + cc + dd;",
+                "    g := printi(g);",
+                "  end;",
+                "end");
+        CompilerOptions options = new CompilerOptions();
+        options.setFunctionCache(new DiskFunctionCache(folder.getRoot().toPath(), 1 << 20));
+        new TigerCompiler(options).compile(source, "names.tiger");
+
+        // the names change the order of the live sets, but not the code
+        String renamed = source.replaceAll("\\baa\\b", "zq").replaceAll("\\bbb\\b", "mx")
+                .replaceAll("\\bcc\\b", "ab").replaceAll("\\bdd\\b", "kk");
+        assertEquals(new TigerCompiler(new CompilerOptions()).compile(renamed, "renamed.tiger").getAssembly(),
+                new TigerCompiler(options).compile(renamed, "renamed.tiger").getAssembly());
+    }
+}